@@ -0,0 +1,103 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class ChainSolverTest extends TestCase {
+    private static final int BOARDS = 1000;
+    private static final long BUDGET_NANOS = 1000000000L;
+
+    public void testFindsTheLongestChainOnSmallBoards() {
+        ChainSolver solver = new ChainSolver();
+        Random random = new Random(7);
+        for(int board = 0; board < BOARDS; board++) {
+            int gridLength = 2 + random.nextInt(8);
+            double density = random.nextDouble() * getMaxDensity(gridLength);
+            DotGrid grid = new DotGrid(gridLength, new FrameClock());
+            for(int id = 0; id < grid.size(); id++) {
+                if(random.nextDouble() < density) {
+                    grid.setState(id, DotState.VISIBLE);
+                }
+            }
+
+            int length = solver.solve(grid, BUDGET_NANOS);
+            String name = "board " + board + " (" + gridLength + "x" + gridLength + ")";
+            assertTrue(name, solver.isOptimal());
+            assertEquals(name, new BruteForce(grid).longestChain(), length);
+            assertValidChain(name, grid, solver.getChain(), length);
+        }
+    }
+
+    /**
+     * The densest boards that the brute force gets through quickly.
+     */
+    private static double getMaxDensity(int gridLength) {
+        if(gridLength <= 4) {
+            return 1;
+        } else if(gridLength == 5) {
+            return 0.7;
+        } else if(gridLength == 6) {
+            return 0.45;
+        }
+        return 0.35;
+    }
+
+    private static void assertValidChain(String board, DotGrid grid, int[] chain, int length) {
+        Set<Integer> chained = new HashSet<Integer>();
+        for(int i = 0; i < length; i++) {
+            assertTrue(board, grid.isVisible(chain[i]));
+            assertTrue(board, chained.add(chain[i]));
+            if(i > 0) {
+                assertTrue(board, grid.isAdjacent(chain[i - 1], chain[i]));
+            }
+        }
+    }
+
+    /**
+     * Tries every simple path of VISIBLE dots, stopping early only if one chains all of them.
+     */
+    private static class BruteForce {
+        private final DotGrid grid;
+        private final int gridLength;
+        private final boolean[] used;
+        private int visible;
+        private int longest;
+
+        BruteForce(DotGrid grid) {
+            this.grid = grid;
+            this.gridLength = grid.getGridLength();
+            this.used = new boolean[grid.size()];
+        }
+
+        int longestChain() {
+            visible = grid.getCount(DotState.VISIBLE);
+            for(int id = 0; id < grid.size() && longest < visible; id++) {
+                if(grid.isVisible(id)) {
+                    used[id] = true;
+                    extend(id, 1);
+                    used[id] = false;
+                }
+            }
+            return longest;
+        }
+
+        private void extend(int id, int length) {
+            longest = Math.max(longest, length);
+            int row = id / gridLength;
+            int col = id % gridLength;
+            for(int r = Math.max(0, row - 1); r <= Math.min(gridLength - 1, row + 1); r++) {
+                for(int c = Math.max(0, col - 1); c <= Math.min(gridLength - 1, col + 1); c++) {
+                    int next = r*gridLength + c;
+                    if(!used[next] && grid.isVisible(next) && longest < visible) {
+                        used[next] = true;
+                        extend(next, length + 1);
+                        used[next] = false;
+                    }
+                }
+            }
+        }
+    }
+}
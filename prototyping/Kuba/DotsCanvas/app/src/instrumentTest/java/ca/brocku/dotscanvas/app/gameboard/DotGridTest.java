@@ -0,0 +1,85 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class DotGridTest extends TestCase {
+    public void testIndexesFollowStateChangesAcrossPages() {
+        DotGrid grid = new DotGrid(100, new FrameClock());
+        DotState[] expected = new DotState[grid.size()];
+        Arrays.fill(expected, DotState.INVISIBLE);
+        DotState[] states = DotState.values();
+
+        Random random = new Random(3);
+        for(int i = 0; i < 20000; i++) {
+            int id = random.nextInt(grid.size());
+            DotState state = states[random.nextInt(states.length)];
+            grid.setState(id, state);
+            expected[id] = state;
+        }
+
+        for(DotState state: states) {
+            List<Integer> ids = new ArrayList<Integer>();
+            for(int id = 0; id < grid.size(); id++) {
+                assertEquals(expected[id], grid.getState(id));
+                if(expected[id] == state) {
+                    ids.add(id);
+                }
+            }
+            assertEquals(ids.size(), grid.getCount(state));
+            if(state != DotState.INVISIBLE) {
+                assertEquals(ids, visit(grid, state));
+            }
+        }
+    }
+
+    public void testForEachAnimatingVisitsADotMovedBetweenAnimatingStatesOnce() {
+        final DotGrid grid = new DotGrid(6, new FrameClock());
+        for(int id = 0; id < 10; id++) {
+            grid.setState(id, id % 2 == 0 ? DotState.APPEARING : DotState.DISAPPEARING);
+        }
+
+        final int[] visits = new int[grid.size()];
+        grid.forEachAnimating(new DotGrid.DotVisitor() {
+            @Override
+            public void visit(int id) {
+                visits[id]++;
+                grid.setState(id, grid.getState(id) == DotState.APPEARING ? DotState.DISAPPEARING : DotState.APPEARING);
+            }
+        });
+
+        for(int id = 0; id < 10; id++) {
+            assertEquals(1, visits[id]);
+        }
+    }
+
+    public void testSingleChunkAndChunkedGridsAgree() {
+        for(int gridLength: new int[] {1, 6, 16, 17, 40}) {
+            DotGrid grid = new DotGrid(gridLength, new FrameClock());
+            for(int id = 0; id < grid.size(); id += 3) {
+                grid.setState(id, DotState.VISIBLE);
+            }
+            for(int id = 0; id < grid.size(); id++) {
+                assertEquals(id % 3 == 0, grid.isVisible(id));
+                assertEquals(id, grid.getDot(id).getID());
+            }
+        }
+    }
+
+    private static List<Integer> visit(DotGrid grid, DotState state) {
+        final List<Integer> ids = new ArrayList<Integer>();
+        grid.forEach(state, new DotGrid.DotVisitor() {
+            @Override
+            public void visit(int id) {
+                ids.add(id);
+            }
+        });
+        Collections.sort(ids);
+        return ids;
+    }
+}
@@ -0,0 +1,84 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+
+public class GameSnapshotTest extends TestCase {
+    private static final float PIXELS_PER_DOT_REGION = 60;
+
+    public void testRestoredGameEncodesAndPlaysOnTheSame() {
+        assertRoundTrip(newEngine(6, 1));
+
+        GameEngine large = newEngine(200, 1);
+        large.setPlayArea(90, 90, 105, 105);
+        assertRoundTrip(large);
+    }
+
+    public void testSnapshotOfAnotherVersionIsRejected() {
+        ByteBuffer snapshot = new GameSnapshot().encode(newEngine(6, 1));
+        snapshot.putInt(snapshot.position() + 4, GameSnapshot.VERSION + 1);
+
+        assertFalse(GameSnapshot.decode(snapshot, newEngine(6, 2)));
+    }
+
+    /**
+     * Plays a while, restores into an engine with another seed, and checks that the restored game
+     * encodes to the same bytes and plays on to the same state.
+     */
+    private static void assertRoundTrip(GameEngine engine) {
+        int gridLength = engine.getDotGrid().getGridLength();
+        engine.setDotsToMiss(Integer.MAX_VALUE);
+        for(int tick = 0; tick < 1200; tick++) {
+            engine.step(ReplayTest.NANOS_PER_TICK, null);
+        }
+        GameSnapshot snapshot = new GameSnapshot();
+        ByteBuffer encoded = snapshot.encode(engine);
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+
+        //The snapshot keeps whole milliseconds, so the restored clock starts at the same point
+        //within a millisecond for the ticks to line up with the original's
+        GameEngine restored = newEngine(gridLength, 2);
+        restored.getClock().advance(engine.getClock().nanoTime() % FrameClock.NANOS_PER_MILLI);
+        assertTrue(GameSnapshot.decode(ByteBuffer.wrap(bytes), restored));
+        assertEquals(ByteBuffer.wrap(bytes), snapshot.encode(restored));
+
+        for(int tick = 0; tick < 1200; tick++) {
+            engine.step(ReplayTest.NANOS_PER_TICK, null);
+            restored.step(ReplayTest.NANOS_PER_TICK, null);
+        }
+        assertEquals(engine.getScore(), restored.getScore());
+        assertEquals(engine.getMissedDots(), restored.getMissedDots());
+        assertEquals(snapshot.fingerprint(engine), snapshot.fingerprint(restored));
+    }
+
+    public void testRestoredChainIsDroppedWithItsTouch() {
+        GameEngine engine = newEngine(6, 1);
+        engine.setDotState(0, DotState.VISIBLE);
+        engine.setDotState(1, DotState.VISIBLE);
+        DotGrid grid = engine.getDotGrid();
+        engine.onTouch(TouchEventQueue.ACTION_DOWN, grid.getCenterX(0), grid.getCenterY(0), 0);
+        engine.onTouch(TouchEventQueue.ACTION_MOVE, grid.getCenterX(1), grid.getCenterY(1), 0);
+        assertEquals(2, engine.getDotChain().size());
+
+        GameEngine restored = newEngine(6, 2);
+        assertTrue(GameSnapshot.decode(new GameSnapshot().encode(engine), restored));
+
+        assertFalse(restored.isInteracting());
+        assertTrue(restored.getDotChain().isEmpty());
+        assertEquals(DotState.VISIBLE, restored.getDotGrid().getState(0));
+        assertEquals(DotState.VISIBLE, restored.getDotGrid().getState(1));
+    }
+
+    static GameEngine newEngine(int gridLength, long seed) {
+        GameEngine engine = new GameEngine(gridLength, seed, new FrameClock(new FrameClock.TimeSource() {
+            @Override
+            public long nanoTime() {
+                return 0;
+            }
+        }));
+        engine.setBoardSize(gridLength * PIXELS_PER_DOT_REGION);
+        return engine;
+    }
+}
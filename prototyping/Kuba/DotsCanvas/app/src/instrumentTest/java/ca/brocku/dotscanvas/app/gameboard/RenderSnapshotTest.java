@@ -0,0 +1,51 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class RenderSnapshotTest extends TestCase {
+    private static final int GRID_LENGTH = 200;
+    private static final float PIXELS_PER_DOT_REGION = 60;
+
+    public void testCapturesTheDotsOnScreenInAscendingOrder() {
+        GameEngine engine = new GameEngine(GRID_LENGTH, 1, new FrameClock());
+        engine.setBoardSize(GRID_LENGTH * PIXELS_PER_DOT_REGION);
+        DotGrid grid = engine.getDotGrid();
+        Random random = new Random(5);
+        DotState[] states = DotState.values();
+        for(int i = 0; i < 20000; i++) {
+            engine.setDotState(random.nextInt(grid.size()), states[random.nextInt(states.length)]);
+        }
+
+        Viewport viewport = new Viewport();
+        viewport.setScreenSize(800, 1200);
+        viewport.setBoard(GRID_LENGTH, PIXELS_PER_DOT_REGION);
+        viewport.centerOn(GRID_LENGTH * PIXELS_PER_DOT_REGION / 3, GRID_LENGTH * PIXELS_PER_DOT_REGION / 2);
+
+        RenderSnapshot snapshot = new RenderSnapshot();
+        snapshot.capture(engine, viewport, 1, 0, 0);
+
+        int visible = 0;
+        int animating = 0;
+        for(int row = viewport.getFirstVisibleRow(); row <= viewport.getLastVisibleRow(); row++) {
+            for(int col = viewport.getFirstVisibleCol(); col <= viewport.getLastVisibleCol(); col++) {
+                int id = row*GRID_LENGTH + col;
+                switch (grid.getState(id)) {
+                    case VISIBLE:
+                        assertEquals(id, snapshot.getVisibleIds()[visible++]);
+                        break;
+                    case APPEARING:
+                    case DISAPPEARING:
+                        assertEquals(id, snapshot.getAnimatingIds()[animating]);
+                        assertEquals(grid.getStateStartTime(id), snapshot.getAnimationStartTime(animating));
+                        assertEquals(grid.getState(id) == DotState.APPEARING, snapshot.isAppearing(animating));
+                        animating++;
+                        break;
+                }
+            }
+        }
+        assertEquals(visible, snapshot.getVisibleCount());
+        assertEquals(animating, snapshot.getAnimatingCount());
+    }
+}
@@ -0,0 +1,134 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class ReplayTest extends TestCase {
+    static final long NANOS_PER_TICK = 1000000000L / 120;
+    private static final int TICKS_PER_TAP = 30;
+    private static final long MAX_TICKS = 120 * 120;
+    private static final int CUT_BYTES = 40;
+
+    public void testReplayMatchesTheRecordedGame() {
+        GameEngine engine = GameSnapshotTest.newEngine(6, 7);
+        ReplayRecorder recorder = record(engine);
+        TouchEventQueue touches = new TouchEventQueue(16);
+        for(long tick = 1; !engine.isGameOver() && tick < MAX_TICKS; tick++) {
+            if(tick % TICKS_PER_TAP == 0) {
+                tapFirstVisibleDot(engine, touches);
+            }
+            engine.step(NANOS_PER_TICK, touches); //handled within the tick, as the game does
+        }
+        recorder.finish(engine);
+        assertTrue(engine.getScore() > 0);
+
+        ReplayPlayer player = new ReplayPlayer(recorder.toByteArray());
+        GameEngine replayed = player.play();
+        assertEquals(engine.getScore(), replayed.getScore());
+        assertTrue(player.matches(replayed));
+    }
+
+    public void testDivergedGameDoesNotMatchEvenWithTheSameCounters() {
+        GameEngine engine = GameSnapshotTest.newEngine(6, 7);
+        ReplayRecorder recorder = record(engine);
+        while(!engine.isGameOver()) {
+            engine.step(NANOS_PER_TICK, null);
+        }
+        recorder.finish(engine);
+
+        //Something the log doesn't know about changes the game, but no dot is ever chained and
+        //the game still ends with every allowed dot missed
+        ReplayPlayer player = new ReplayPlayer(recorder.toByteArray());
+        GameEngine diverged = player.createEngine();
+        diverged.setSpawnRate(GameEngine.SPAWN_RATE_PER_DOT * 1.01, GameEngine.SPAWN_RATE_INCREASE_PER_DOT,
+                GameEngine.MAX_SPAWN_RATE_PER_DOT);
+        while(!player.isEnded()) {
+            player.step(diverged);
+        }
+        while(!diverged.isGameOver()) {
+            diverged.step(NANOS_PER_TICK, null);
+        }
+
+        assertEquals(player.getExpectedScore(), diverged.getScore());
+        assertEquals(player.getExpectedMissedDots(), diverged.getMissedDots());
+        assertFalse(player.matches(diverged));
+    }
+
+    public void testTruncatedReplayDoesNotMatch() {
+        GameEngine engine = GameSnapshotTest.newEngine(6, 7);
+        ReplayRecorder recorder = record(engine);
+        for(int tick = 0; tick < TICKS_PER_TAP; tick++) {
+            engine.step(NANOS_PER_TICK, null);
+        }
+
+        ReplayPlayer player = new ReplayPlayer(recorder.toByteArray());
+        assertFalse(player.matches(player.play()));
+    }
+
+    public void testReplayCutOffWithinARecordEndsWithoutMatching() {
+        GameEngine engine = GameSnapshotTest.newEngine(6, 7);
+        ReplayRecorder recorder = record(engine);
+        TouchEventQueue touches = new TouchEventQueue(16);
+        for(long tick = 1; !engine.isGameOver() && tick < MAX_TICKS; tick++) {
+            if(tick % TICKS_PER_TAP == 0) {
+                tapFirstVisibleDot(engine, touches);
+            }
+            engine.step(NANOS_PER_TICK, touches);
+        }
+        recorder.finish(engine);
+        byte[] log = recorder.toByteArray();
+
+        //The last bytes hold the END record and the last touches, so some of these cuts fall
+        //within a record
+        for(int length = log.length - 1; length > log.length - CUT_BYTES; length--) {
+            ReplayPlayer player = new ReplayPlayer(Arrays.copyOf(log, length));
+            GameEngine replayed = player.play();
+            assertTrue(player.isEnded());
+            assertFalse(player.matches(replayed));
+        }
+    }
+
+    public void testReplayMatchesAPannedLargeBoard() {
+        //The play area follows the viewport, which the game moves between ticks rather than
+        //within them, as it does the board size
+        GameEngine engine = GameSnapshotTest.newEngine(200, 11);
+        ReplayRecorder recorder = record(engine);
+        int playLength = 16;
+        for(int tick = 1; !engine.isGameOver(); tick++) {
+            engine.step(NANOS_PER_TICK, null);
+            if(tick % 3 == 0) {
+                int first = 50 + tick / 30 % 100;
+                engine.setPlayArea(first, first, first + playLength - 1, first + playLength - 1);
+            }
+            if(tick == 300) {
+                engine.setBoardSize(200 * 2 * engine.getPixelsPerDotRegion());
+            }
+        }
+        recorder.finish(engine);
+
+        ReplayPlayer player = new ReplayPlayer(recorder.toByteArray());
+        GameEngine replayed = player.play();
+        assertTrue(player.getTick() > 300);
+        assertTrue(player.matches(replayed));
+    }
+
+    static ReplayRecorder record(GameEngine engine) {
+        ReplayRecorder recorder = new ReplayRecorder(engine, NANOS_PER_TICK);
+        engine.setRecorder(recorder);
+        engine.setBoardSize(engine.getDotGrid().getGridLength() * engine.getPixelsPerDotRegion()); //recorded
+        return recorder;
+    }
+
+    private static void tapFirstVisibleDot(GameEngine engine, TouchEventQueue touches) {
+        DotGrid grid = engine.getDotGrid();
+        for(int id = 0; id < grid.size(); id++) {
+            if(grid.isVisible(id)) {
+                long time = engine.getClock().now();
+                touches.offer(TouchEventQueue.ACTION_DOWN, grid.getCenterX(id), grid.getCenterY(id), time, 0);
+                touches.offer(TouchEventQueue.ACTION_UP, grid.getCenterX(id), grid.getCenterY(id), time, 0);
+                return;
+            }
+        }
+    }
+}
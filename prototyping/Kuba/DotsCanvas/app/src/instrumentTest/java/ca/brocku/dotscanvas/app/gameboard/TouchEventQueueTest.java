@@ -0,0 +1,154 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import junit.framework.TestCase;
+
+import static ca.brocku.dotscanvas.app.gameboard.TouchEventQueue.ACTION_DOWN;
+import static ca.brocku.dotscanvas.app.gameboard.TouchEventQueue.ACTION_MOVE;
+import static ca.brocku.dotscanvas.app.gameboard.TouchEventQueue.ACTION_OUTSIDE;
+import static ca.brocku.dotscanvas.app.gameboard.TouchEventQueue.ACTION_UP;
+
+public class TouchEventQueueTest extends TestCase {
+    private static final int CAPACITY = 16;
+    private static final int GESTURES = 20000;
+    private static final int MOVES_PER_GESTURE = 20;
+
+    public void testPollsInOfferOrder() {
+        TouchEventQueue queue = new TouchEventQueue(CAPACITY);
+        queue.offer(ACTION_DOWN, 1, 2, 10, 0);
+        queue.offer(ACTION_MOVE, 3, 4, 11, 0);
+        queue.offer(ACTION_UP, 5, 6, 12, 0);
+
+        assertPolled(queue, ACTION_DOWN, 1, 2, 10);
+        assertPolled(queue, ACTION_MOVE, 3, 4, 11);
+        assertPolled(queue, ACTION_UP, 5, 6, 12);
+        assertFalse(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    public void testMergesMovesWhenFullAndStillQueuesTheUp() {
+        TouchEventQueue queue = new TouchEventQueue(CAPACITY);
+        assertTrue(queue.offer(ACTION_DOWN, 0, 0, 0, 0));
+        int moves = 100;
+        for(int i = 1; i <= moves; i++) {
+            queue.offer(ACTION_MOVE, i, i, i, 0);
+        }
+        assertTrue(queue.offer(ACTION_UP, moves, moves, moves + 1, 0));
+
+        assertPolled(queue, ACTION_DOWN, 0, 0, 0);
+        int polledMoves = 0;
+        float lastX = 0;
+        while(queue.poll() && queue.getAction() == ACTION_MOVE) {
+            assertTrue(queue.getX() > lastX);
+            lastX = queue.getX();
+            polledMoves++;
+        }
+        assertEquals(ACTION_UP, queue.getAction());
+        assertEquals("the last MOVE is queued before the UP", moves, lastX, 0);
+        assertEquals(moves, polledMoves + queue.getMergedEvents());
+        assertEquals(0, queue.getDroppedEvents());
+    }
+
+    public void testHeldMoveIsQueuedOnceThereIsRoom() {
+        TouchEventQueue queue = new TouchEventQueue(CAPACITY);
+        queue.offer(ACTION_DOWN, 0, 0, 0, 0);
+        for(int i = 1; i <= CAPACITY; i++) {
+            queue.offer(ACTION_MOVE, i, i, i, 0);
+        }
+        while(queue.poll()) {
+            //the consumer catches up
+        }
+
+        assertTrue(queue.offer(ACTION_MOVE, 100, 100, 100, 0));
+        assertPolled(queue, ACTION_MOVE, CAPACITY, CAPACITY, CAPACITY);
+        assertPolled(queue, ACTION_MOVE, 100, 100, 100);
+    }
+
+    public void testDropsAWholeGestureWhoseDownDoesNotFit() {
+        TouchEventQueue queue = new TouchEventQueue(CAPACITY);
+        queue.offer(ACTION_DOWN, 0, 0, 0, 0);
+        for(int i = 1; i <= CAPACITY; i++) {
+            queue.offer(ACTION_MOVE, i, i, i, 0);
+        }
+        queue.offer(ACTION_UP, 0, 0, 0, 0);
+
+        assertFalse(queue.offer(ACTION_DOWN, 1, 1, 1, 0));
+        assertFalse(queue.offer(ACTION_MOVE, 2, 2, 2, 0));
+        assertTrue(queue.offer(ACTION_UP, 3, 3, 3, 0));
+        assertEquals(2, queue.getDroppedEvents());
+
+        int downs = 0;
+        int ups = 0;
+        while(queue.poll()) {
+            downs += queue.getAction() == ACTION_DOWN ? 1 : 0;
+            ups += queue.getAction() == ACTION_UP ? 1 : 0;
+        }
+        assertEquals(1, downs);
+        assertEquals(2, ups);
+    }
+
+    public void testOutsideAndUpBothFitAfterAFullGesture() {
+        TouchEventQueue queue = new TouchEventQueue(CAPACITY);
+        queue.offer(ACTION_DOWN, 0, 0, 0, 0);
+        for(int i = 1; i <= CAPACITY; i++) {
+            queue.offer(ACTION_MOVE, i, i, i, 0);
+        }
+        assertTrue(queue.offer(ACTION_OUTSIDE, 0, 0, 0, 0));
+        assertTrue(queue.offer(ACTION_UP, 0, 0, 0, 0));
+    }
+
+    public void testConsumerOnAnotherThreadPollsInOfferOrder() throws InterruptedException {
+        final TouchEventQueue queue = new TouchEventQueue(CAPACITY);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long time = 0;
+                for(int gesture = 0; gesture < GESTURES; gesture++) {
+                    queue.offer(ACTION_DOWN, gesture, 0, time++, 0);
+                    for(int i = 0; i < MOVES_PER_GESTURE; i++) {
+                        queue.offer(ACTION_MOVE, gesture, i, time++, 0);
+                    }
+                    queue.offer(ACTION_UP, gesture, 0, time++, 0);
+                }
+            }
+        });
+        producer.start();
+
+        int polled = 0;
+        long lastTime = -1;
+        int lastGesture = -1;
+        int downGesture = -1; //the gesture whose DOWN was polled last, until its UP is
+        while(producer.isAlive() || !queue.isEmpty()) {
+            if(!queue.poll()) {
+                continue;
+            }
+            polled++;
+            assertTrue(queue.getTime() > lastTime);
+            lastTime = queue.getTime();
+
+            int gesture = (int) queue.getX();
+            if(queue.getAction() == ACTION_DOWN) {
+                assertEquals(-1, downGesture);
+                assertTrue(gesture > lastGesture);
+                downGesture = gesture;
+            } else if(queue.getAction() == ACTION_MOVE) {
+                assertEquals("a MOVE of a gesture whose DOWN was dropped", downGesture, gesture);
+            } else if(queue.getAction() == ACTION_UP) {
+                assertTrue(gesture > lastGesture);
+                downGesture = -1;
+                lastGesture = gesture;
+            }
+        }
+        producer.join();
+
+        int offered = GESTURES * (MOVES_PER_GESTURE + 2);
+        assertEquals(offered, polled + queue.getMergedEvents() + queue.getDroppedEvents());
+    }
+
+    private static void assertPolled(TouchEventQueue queue, int action, float x, float y, long time) {
+        assertTrue(queue.poll());
+        assertEquals(action, queue.getAction());
+        assertEquals(x, queue.getX(), 0);
+        assertEquals(y, queue.getY(), 0);
+        assertEquals(time, queue.getTime());
+    }
+}
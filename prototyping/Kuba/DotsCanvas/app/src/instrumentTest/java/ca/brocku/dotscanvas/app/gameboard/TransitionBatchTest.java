@@ -0,0 +1,66 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TransitionBatchTest extends TestCase {
+    private static final int GRID_LENGTH = 200;
+    private static final int BURST = 3*GameEngine.PARALLEL_UPDATE_THRESHOLD;
+    private static final int TICKS = 3 * 120;
+
+    private ExecutorService executor;
+
+    @Override
+    protected void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @Override
+    protected void tearDown() {
+        executor.shutdown();
+    }
+
+    public void testBandedUpdatePlaysTheSameGame() {
+        assertSameGame(Integer.MAX_VALUE);
+    }
+
+    public void testBandedUpdateEndsTheGameOnTheSameTransition() {
+        assertSameGame(BURST / 4); //within the burst of misses
+    }
+
+    private void assertSameGame(int dotsToMiss) {
+        GameEngine sequential = newBurstEngine(dotsToMiss);
+        GameEngine banded = newBurstEngine(dotsToMiss);
+        banded.setUpdateExecutor(executor, 4);
+
+        GameSnapshot sequentialSnapshot = new GameSnapshot();
+        GameSnapshot bandedSnapshot = new GameSnapshot();
+        for(int tick = 0; tick < TICKS; tick++) {
+            sequential.step(ReplayTest.NANOS_PER_TICK, null);
+            banded.step(ReplayTest.NANOS_PER_TICK, null);
+            assertEquals(sequential.getMissedDots(), banded.getMissedDots());
+            assertEquals(sequential.isGameOver(), banded.isGameOver());
+            assertEquals(sequentialSnapshot.encode(sequential), bandedSnapshot.encode(banded));
+        }
+        assertEquals(Math.min(dotsToMiss, BURST), banded.getMissedDots());
+        for(DotState state: DotState.values()) {
+            assertEquals(sequential.getDotGrid().getCount(state), banded.getDotGrid().getCount(state));
+        }
+    }
+
+    /**
+     * A large board with a burst of dots shown at once, half of them still appearing, so that they
+     * come due together again and again.
+     */
+    private static GameEngine newBurstEngine(int dotsToMiss) {
+        GameEngine engine = GameSnapshotTest.newEngine(GRID_LENGTH, 1);
+        engine.setDotsToMiss(dotsToMiss);
+        int stride = GRID_LENGTH*GRID_LENGTH / BURST;
+        for(int i = 0; i < BURST; i++) {
+            engine.setDotState(i*stride, i % 2 == 0 ? DotState.VISIBLE : DotState.APPEARING);
+        }
+        return engine;
+    }
+}
@@ -0,0 +1,99 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class TransitionSchedulerTest extends TestCase {
+    private static final int DOTS = 5000;
+
+    public void testPollsByDeadlineThenId() {
+        TransitionScheduler scheduler = new TransitionScheduler(DOTS);
+        long[] deadlines = new long[DOTS];
+        Random random = new Random(11);
+        for(int id = 0; id < DOTS; id++) {
+            deadlines[id] = random.nextInt(100); //plenty of ties
+            scheduler.schedule(id, deadlines[id]);
+        }
+
+        assertPolledInOrder(scheduler, deadlines);
+    }
+
+    public void testOnlyPollsWhatIsDue() {
+        TransitionScheduler scheduler = new TransitionScheduler(DOTS);
+        scheduler.schedule(7, 20);
+        scheduler.schedule(3, 10);
+
+        assertEquals(-1, scheduler.pollDue(9));
+        assertEquals(3, scheduler.pollDue(10));
+        assertEquals(-1, scheduler.pollDue(19));
+        assertEquals(20, scheduler.peekDeadline());
+        assertEquals(7, scheduler.pollDue(100));
+        assertEquals(Long.MAX_VALUE, scheduler.peekDeadline());
+    }
+
+    public void testReschedulingAndCancellingKeepTheOrder() {
+        TransitionScheduler scheduler = new TransitionScheduler(DOTS);
+        long[] deadlines = new long[DOTS];
+        Random random = new Random(13);
+        for(int id = 0; id < DOTS; id++) {
+            deadlines[id] = random.nextInt(1000);
+            scheduler.schedule(id, deadlines[id]);
+        }
+        for(int i = 0; i < 3*DOTS; i++) {
+            int id = random.nextInt(DOTS);
+            if(random.nextInt(4) == 0) {
+                scheduler.cancel(id);
+                deadlines[id] = -1;
+                assertFalse(scheduler.isScheduled(id));
+            } else {
+                deadlines[id] = random.nextInt(1000);
+                scheduler.schedule(id, deadlines[id]);
+                assertEquals(deadlines[id], scheduler.getDeadline(id));
+            }
+        }
+
+        assertPolledInOrder(scheduler, deadlines);
+    }
+
+    public void testClearUnschedulesEverything() {
+        TransitionScheduler scheduler = new TransitionScheduler(DOTS);
+        for(int id = 0; id < DOTS; id += 3) {
+            scheduler.schedule(id, id);
+        }
+        scheduler.clear();
+
+        assertEquals(0, scheduler.size());
+        assertFalse(scheduler.isScheduled(0));
+        assertEquals(-1, scheduler.pollDue(Long.MAX_VALUE));
+
+        scheduler.schedule(3, 5);
+        assertTrue(scheduler.isScheduled(3));
+        assertEquals(3, scheduler.pollDue(5));
+    }
+
+    /**
+     * @param deadlines each dot's deadline, or -1 for the dots that aren't scheduled
+     */
+    private static void assertPolledInOrder(TransitionScheduler scheduler, long[] deadlines) {
+        int scheduled = 0;
+        for(long deadline: deadlines) {
+            scheduled += deadline >= 0 ? 1 : 0;
+        }
+        assertEquals(scheduled, scheduler.size());
+
+        long lastDeadline = Long.MIN_VALUE;
+        int lastId = -1;
+        int id;
+        while((id = scheduler.pollDue(Long.MAX_VALUE)) != -1) {
+            long deadline = deadlines[id];
+            assertTrue(deadline >= 0);
+            assertTrue(deadline > lastDeadline || deadline == lastDeadline && id > lastId);
+            assertFalse(scheduler.isScheduled(id));
+            lastDeadline = deadline;
+            lastId = id;
+            scheduled--;
+        }
+        assertEquals(0, scheduled);
+    }
+}
@@ -0,0 +1,72 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import junit.framework.TestCase;
+
+public class TripleBufferTest extends TestCase {
+    private static final int PUBLISHES = 1000000;
+
+    public void testReaderGetsTheLatestPublished() {
+        TripleBuffer<int[]> buffer = newBuffer();
+        assertFalse("nothing published yet", buffer.update());
+
+        for(int i = 1; i <= 3; i++) {
+            buffer.getBack()[0] = i;
+            buffer.publish();
+        }
+        assertTrue(buffer.update());
+        assertEquals(3, buffer.getFront()[0]);
+        assertFalse("already seen", buffer.update());
+        assertEquals(3, buffer.getFront()[0]);
+
+        buffer.getBack()[0] = 4;
+        buffer.publish();
+        assertTrue(buffer.update());
+        assertEquals(4, buffer.getFront()[0]);
+    }
+
+    public void testWriterNeverFillsTheFrontBuffer() {
+        TripleBuffer<int[]> buffer = newBuffer();
+        buffer.getBack()[0] = 1;
+        buffer.publish();
+        buffer.update();
+        int[] front = buffer.getFront();
+
+        for(int i = 2; i < 10; i++) {
+            assertTrue(buffer.getBack() != front);
+            buffer.getBack()[0] = i;
+            buffer.publish();
+        }
+        assertEquals(1, front[0]);
+    }
+
+    public void testReaderOnAnotherThreadSeesWholeBuffersInOrder() throws InterruptedException {
+        final TripleBuffer<int[]> buffer = newBuffer();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 1; i <= PUBLISHES; i++) {
+                    int[] back = buffer.getBack();
+                    back[0] = i;
+                    back[1] = -i;
+                    buffer.publish();
+                }
+            }
+        });
+        writer.start();
+
+        int last = 0;
+        while(last < PUBLISHES) {
+            if(buffer.update()) {
+                int[] front = buffer.getFront();
+                assertTrue(front[0] > last);
+                assertEquals("a buffer was written to while being read", -front[0], front[1]);
+                last = front[0];
+            }
+        }
+        writer.join();
+    }
+
+    private static TripleBuffer<int[]> newBuffer() {
+        return new TripleBuffer<int[]>(new int[2], new int[2], new int[2]);
+    }
+}
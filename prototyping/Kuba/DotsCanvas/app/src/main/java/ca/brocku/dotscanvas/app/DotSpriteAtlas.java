@@ -0,0 +1,98 @@
+package ca.brocku.dotscanvas.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * A strip of pre-rendered dot sprites for the APPEARING and DISAPPEARING animations. Frame k of N
+ * is a dot drawn at k/N of the full radius and opacity, so an animating dot can be drawn by copying
+ * a bitmap instead of rasterizing a circle every frame.
+ *
+ * The atlas is built for one dot radius and has to be rebuilt when the radius changes.
+ */
+class DotSpriteAtlas {
+    private final int mFrameCount;
+    private final int mFrameSize; //each frame is a square this many pixels wide
+    private final Bitmap mBitmap;
+
+    //Reused by draw() so that drawing does not allocate
+    private final Rect mSrc;
+    private final Rect mDst;
+
+    /**
+     * Renders the atlas.
+     *
+     * @param radius the radius of a fully visible dot
+     * @param frameCount the number of animation steps; frames run from 0 (nothing) to frameCount
+     * @param paint the paint a fully visible dot is drawn with
+     */
+    public DotSpriteAtlas(float radius, int frameCount, Paint paint) {
+        mFrameCount = frameCount;
+        mFrameSize = 2 * ((int) Math.ceil(radius) + 1);
+        mBitmap = Bitmap.createBitmap(mFrameSize * (frameCount + 1), mFrameSize, Bitmap.Config.ARGB_8888);
+
+        Canvas canvas = new Canvas(mBitmap);
+        Paint framePaint = new Paint(paint);
+        float center = mFrameSize / 2.0f;
+        for(int frame = 1; frame <= frameCount; frame++) { //frame 0 is empty
+            float factor = (float) frame / frameCount;
+            framePaint.setAlpha((int) (255 * factor));
+            canvas.drawCircle(frame * mFrameSize + center, center, radius * factor, framePaint);
+        }
+
+        mSrc = new Rect();
+        mDst = new Rect();
+    }
+
+    /**
+     * Draws the frame closest to the given point in the animation.
+     *
+     * @param canvas the canvas to draw to
+     * @param x the x coordinate of the dot's center
+     * @param y the y coordinate of the dot's center
+     * @param factor how much of the dot is shown, from 0 (none) to 1 (fully visible)
+     */
+    public void draw(Canvas canvas, float x, float y, float factor) {
+        draw(canvas, x, y, factor, 1);
+    }
+
+    /**
+     * Draws the frame closest to the given point in the animation, stretched by a scale; e.g. while
+     * the board is being zoomed, before the atlas is rebuilt for the new radius.
+     *
+     * @param scale the size to draw the sprite at, relative to the radius it was rendered for
+     */
+    public void draw(Canvas canvas, float x, float y, float factor, float scale) {
+        if(factor < 0) {
+            factor = 0;
+        }
+        if(factor > 1) {
+            factor = 1;
+        }
+
+        int frame = Math.round(factor * mFrameCount);
+        if(frame == 0) {
+            return;
+        }
+
+        mSrc.set(frame * mFrameSize, 0, (frame + 1) * mFrameSize, mFrameSize);
+        int size = scale == 1 ? mFrameSize : Math.round(mFrameSize * scale);
+        int left = Math.round(x - size / 2.0f);
+        int top = Math.round(y - size / 2.0f);
+        mDst.set(left, top, left + size, top + size);
+        canvas.drawBitmap(mBitmap, mSrc, mDst, null);
+    }
+
+    /**
+     * @return half the width of a frame; the farthest a sprite extends from the dot's center
+     */
+    public int getExtent() {
+        return mFrameSize / 2;
+    }
+
+    public void recycle() {
+        mBitmap.recycle();
+    }
+}
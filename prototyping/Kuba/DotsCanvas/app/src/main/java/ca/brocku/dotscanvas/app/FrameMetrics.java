@@ -0,0 +1,91 @@
+package ca.brocku.dotscanvas.app;
+
+import android.util.Log;
+
+/**
+ * Records how long each phase of the game loop takes, frame by frame, into preallocated
+ * histograms, and counts janky frames: frames whose work took longer than the frame budget.
+ *
+ * Callers guard every use with ENABLED, which is a compile-time constant, so in release builds the
+ * timing calls and the clock reads around them are compiled out.
+ */
+class FrameMetrics {
+    public static final boolean ENABLED = BuildConfig.DEBUG;
+
+    public static final int PHASE_INPUT = 0; //draining the touch queue
+    public static final int PHASE_UPDATE = 1; //GameEngine.update(), in advanceSimulation()
+    public static final int PHASE_DRAW = 2; //doDraw()
+    public static final int PHASE_POST = 3; //unlockCanvasAndPost()
+    private static final int PHASE_FRAME = 4; //all of the above, plus locking the canvas
+    private static final String[] PHASE_NAMES = {"input", "update", "draw", "post", "frame"};
+
+    private final LatencyHistogram[] mHistograms;
+    private final long[] mFramePhaseNanos; //time spent in each phase so far this frame
+    private long mFrameBudget;
+    private int mJankFrames;
+
+    public FrameMetrics(long frameBudget) {
+        mHistograms = new LatencyHistogram[PHASE_NAMES.length];
+        for(int phase = 0; phase < mHistograms.length; phase++) {
+            mHistograms[phase] = new LatencyHistogram();
+        }
+        mFramePhaseNanos = new long[PHASE_NAMES.length];
+        mFrameBudget = frameBudget;
+    }
+
+    public void setFrameBudget(long frameBudget) {
+        mFrameBudget = frameBudget;
+    }
+
+    /**
+     * Adds time to a phase of the current frame. A phase may run several times a frame (e.g. one
+     * update per simulation tick); the frame's total for the phase is what gets recorded.
+     */
+    public void addPhaseTime(int phase, long nanos) {
+        mFramePhaseNanos[phase] += nanos;
+    }
+
+    /**
+     * Records the current frame's phase times and starts a new frame.
+     *
+     * @param frameNanos how long the whole frame's work took
+     */
+    public void endFrame(long frameNanos) {
+        for(int phase = 0; phase < PHASE_FRAME; phase++) {
+            mHistograms[phase].record(mFramePhaseNanos[phase]);
+            mFramePhaseNanos[phase] = 0;
+        }
+        mHistograms[PHASE_FRAME].record(frameNanos);
+
+        if(frameNanos > mFrameBudget) {
+            mJankFrames++;
+        }
+    }
+
+    /**
+     * Logs the percentiles of every phase and the jank count, then starts over.
+     */
+    public void dump(String tag) {
+        long frames = mHistograms[PHASE_FRAME].getTotalCount();
+        if(frames == 0) {
+            return;
+        }
+
+        Log.i(tag, "Frame metrics over " + frames + " frames, " + mJankFrames + " over the "
+                + micros(mFrameBudget) + "us budget");
+        for(int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            LatencyHistogram histogram = mHistograms[phase];
+            Log.i(tag, PHASE_NAMES[phase]
+                    + ": p50 " + micros(histogram.getValueAtPercentile(50))
+                    + "us, p95 " + micros(histogram.getValueAtPercentile(95))
+                    + "us, p99 " + micros(histogram.getValueAtPercentile(99))
+                    + "us, max " + micros(histogram.getMaxValue()) + "us");
+            histogram.reset();
+        }
+        mJankFrames = 0;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+}
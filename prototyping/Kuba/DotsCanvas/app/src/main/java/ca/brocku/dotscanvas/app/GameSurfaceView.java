@@ -1,34 +1,54 @@
 package ca.brocku.dotscanvas.app;
 
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
-import android.os.Bundle;
+import android.graphics.Rect;
+import android.os.Debug;
 import android.os.Handler;
-import android.os.Message;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
 import android.widget.TextView;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Stack;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-import ca.brocku.dotscanvas.app.gameboard.Dot;
 import ca.brocku.dotscanvas.app.gameboard.DotGrid;
-import ca.brocku.dotscanvas.app.gameboard.DotState;
+import ca.brocku.dotscanvas.app.gameboard.FrameClock;
+import ca.brocku.dotscanvas.app.gameboard.GameEngine;
+import ca.brocku.dotscanvas.app.gameboard.RenderSnapshot;
+import ca.brocku.dotscanvas.app.gameboard.ReplayPlayer;
+import ca.brocku.dotscanvas.app.gameboard.ReplayRecorder;
+import ca.brocku.dotscanvas.app.gameboard.TouchEventQueue;
+import ca.brocku.dotscanvas.app.gameboard.TouchPredictor;
+import ca.brocku.dotscanvas.app.gameboard.TripleBuffer;
+import ca.brocku.dotscanvas.app.gameboard.Viewport;
 
 public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callback, View.OnTouchListener {
-    private GameThread thread; //Handles drawing; initialized in surfaceCreated() callback
+    private GameThread thread; //Runs the game; initialized in surfaceCreated() callback
     private Context mContext;
     private TextView mScoreView;
     private TextView mMissedView;
+    private HudChannel mHudChannel; //carries score and missed updates to the UI thread
+    private SnapshotStore mSnapshotStore; //the paused game, kept across surfaces
+    private File mReplayFile; //replay to play instead of a new game, if set
+    private boolean mReplayMaxSpeed;
+    private int mGridLength = GameEngine.DEFAULT_GRID_LENGTH; //dots along each side of a new board
 
     public GameSurfaceView(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -41,11 +61,10 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
         this.setOnTouchListener(this);
 
         mContext =  context;
+        mHudChannel = new HudChannel();
 
-        //Clear any saved game state
-        SharedPreferences.Editor editor =
-                mContext.getSharedPreferences(GameThread.GAME_STATE_FILENAME, Context.MODE_PRIVATE).edit();
-        editor.clear().commit();
+        //Starts with no saved game, so a new launch starts a new game
+        mSnapshotStore = new SnapshotStore();
     }
 
     /**
@@ -61,7 +80,8 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
     @Override
     public void surfaceCreated(SurfaceHolder surfaceHolder) {
         Log.e("Thread", "surfaceCreated()");
-        thread = new GameThread(surfaceHolder, mContext, new ScoreViewHandler(), new MissedViewHandler());
+        thread = new GameThread(surfaceHolder, mContext, mHudChannel, mSnapshotStore, mGridLength,
+                loadReplay(), mReplayMaxSpeed);
         thread.restoreState();
         thread.setRunning(true);
         thread.start();
@@ -127,6 +147,60 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
         return thread;
     }
 
+    /**
+     * Plays a recorded game instead of a new one once the surface is created, e.g. to compare the
+     * frame times of two builds on exactly the same session. Touches are ignored while it plays.
+     *
+     * @param replayFile a log recorded by a debug build; see GameThread.REPLAY_FILENAME
+     * @param maxSpeed whether to run the simulation as fast as possible instead of in real time
+     */
+    public void setReplay(File replayFile, boolean maxSpeed) {
+        mReplayFile = replayFile;
+        mReplayMaxSpeed = maxSpeed;
+    }
+
+    /**
+     * Sets the size of the board for new games. Boards larger than
+     * GameEngine.MAX_SMALL_GRID_LENGTH are shown through a viewport which is panned and zoomed with
+     * two fingers. A saved game of a different size is not resumed.
+     *
+     * @param gridLength the number of dots along each side of the board
+     */
+    public void setGridLength(int gridLength) {
+        mGridLength = gridLength;
+    }
+
+    /**
+     * Reads the replay set with setReplay(). Done on the UI thread, but replays are a debugging
+     * aid and only a few kilobytes.
+     *
+     * @return the replay, or null if none is set or it can't be read
+     */
+    private ReplayPlayer loadReplay() {
+        if(mReplayFile == null) {
+            return null;
+        }
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mReplayFile, "r");
+            byte[] log = new byte[(int) file.length()];
+            file.readFully(log);
+            return new ReplayPlayer(log);
+        } catch (IOException e) {
+            Log.e("Replay", "Could not read " + mReplayFile, e);
+        } catch (IllegalArgumentException e) {
+            Log.e("Replay", "Could not play " + mReplayFile, e);
+        } finally {
+            if(file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {}
+            }
+        }
+        return null;
+    }
+
     public void setScoreView(TextView scoreView) {
         this.mScoreView = scoreView;
     }
@@ -136,114 +210,447 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
     }
 
     /**
-     * This is the Thread which draws to the Canvas.
+     * This is the Thread which runs the game. It simulates the game in real time and publishes a
+     * snapshot of what to draw after every step; its RenderThread draws the latest snapshot to the
+     * Canvas. Neither waits for the other, so a slow lockCanvas() or unlockCanvasAndPost() while
+     * the compositor is busy only delays frames and never the game, and the reverse.
+     *
+     * The render thread is started and stopped along with this thread, and waits while it waits,
+     * so the pair follows the lifecycle in documentation/thread-lifecycle.png as one thread did.
      */
     class GameThread extends Thread {
-        //Strings used for storing the game state
-        public static final String GAME_STATE_FILENAME = "GAME_STATE";
-        public static final String GAME_SCORE = "GAME_SCORE";
-        public static final String GAME_MISSED = "GAME_MISSED";
+        //Debug builds record every game to this file in the files directory; see ReplayRecorder
+        public static final String REPLAY_FILENAME = "replay.bin";
+        private static final boolean RECORD_REPLAYS = BuildConfig.DEBUG;
 
-        private static final int GRID_LENGTH = 6;
-        private static final int NUMBER_OF_DOTS = 36;
-        private static final int DOTS_TO_MISS = 15;
+        private static final int TOUCH_QUEUE_CAPACITY = 256;
 
-        private static final long DURATION_ANIMATION = 100;
-        private static final long DURATION_VISIBLE = 2000;
-        private int fps = 60;
+        //Game loop timing; the simulation advances in fixed ticks independent of the frame rate
+        private static final int TICKS_PER_SECOND = 120;
+        private static final long NANOS_PER_TICK = 1000000000L / TICKS_PER_SECOND;
+        private static final int MAX_TICKS_PER_FRAME = 5; //caps catch-up after a slow step
+        private static final int DEFAULT_FPS = 60;
+
+        //Drawing colours
+        private static final int COLOR_BACKGROUND = 0xFF333333; //rgb(51,51,51)
+        private static final int COLOR_DOT = 0xFFED1164; //rgb(237,17,100)
+        private static final float LINE_WIDTH = 15;
+
+        //Number of pre-rendered frames an APPEARING/DISAPPEARING dot's animation is quantized to
+        private static final int ANIMATION_FRAMES = 16;
+
+        //A large board starts with DEFAULT_GRID_LENGTH dots across the screen, and can be zoomed
+        //out until MAX_VISIBLE_DOTS are across it or in to MAX_ZOOM times the starting size
+        private static final int MAX_VISIBLE_DOTS = 48;
+        private static final float MAX_ZOOM = 2;
+
+        private volatile int mTargetFps;
+        private volatile long mNanosPerFrame;
+        private long mTickAccumulator; //simulation time owed to the engine, in nanoseconds
+        private final FrameMetrics mFrameMetrics; //simulation steps; null unless FrameMetrics.ENABLED
 
         private SurfaceHolder mSurfaceHolder;
         private Context mContext;
-        private ScoreViewHandler mScoreViewHandler;
-        private MissedViewHandler mMissedViewHandler;
+        private HudChannel mHudChannel;
+        private SnapshotStore mSnapshotStore;
+
+        private ReplayRecorder mRecorder; //records this game, if recording
+        private ReplayPlayer mReplay; //plays a recorded game instead of taking touches, if set
+        private boolean mReplayMaxSpeed; //whether the replay runs as fast as possible
 
         private int mCanvasHeight = 1;
         private int mCanvasWidth = 1;
         private float mCanvasLength = 1; //the smaller of the height and width
-        private float mPixelsPerDotRegion = 1;
-        private float mDotRadius = 1;
-        private float mMaxLineLength = 1;
+        private boolean mSurfaceSized; //whether the surface size is known yet
 
-        private boolean mRun;  //whether the surface has been created & is ready to draw
-        private boolean mBlock; //whether the surface has lost focus
+        private volatile boolean mRun;  //whether the surface has been created & is ready to draw
+        private volatile boolean mBlock; //whether the surface has lost focus
 
         private boolean mGameOver; //has the game completed
         private boolean mQuitRequested; //is the user quitting the game
 
+        //The game itself; this thread runs it in real time. Everything the engine touches is
+        //guarded by mSurfaceHolder, which the UI thread also takes to resize or save the game.
+        private GameEngine mEngine;
+        private FrameClock mClock; //the engine's time; advanced one tick at a time
         private DotGrid mDotGrid;
-        private Stack<Dot> mDotChain;
-        private boolean mInteracting; //interaction = actions from touch down to touch up
-        private float mChainingLineX;
-        private float mChainingLineY;
+        private TouchEventQueue mTouchEvents; //filled by the UI thread, drained every tick
+
+        //The part of the board on screen. Touches are queued in screen coordinates and converted
+        //to board coordinates when the game thread handles them.
+        private final Viewport mViewport;
+        private final boolean mLargeBoard;
+        private ExecutorService mUpdateExecutor; //applies large ticks in bands; large boards only
+        private float mLayoutPixelsPerDotRegion; //the board geometry the viewport was set up for
+        private boolean mViewportPlaced; //whether a large board's viewport has been centered yet
+        private int mLayout; //changes whenever the surface, board or viewport does
+
+        //Two finger pan and zoom on large boards. The UI thread accumulates the gesture under
+        //mGestureLock and the game thread applies it once per step.
+        private final ScaleGestureDetector mScaleDetector;
+        private final Object mGestureLock = new Object();
+        private boolean mGesturing; //UI thread only
+        private float mLastFocusX; //UI thread only
+        private float mLastFocusY;
+        private float mPendingPanX;
+        private float mPendingPanY;
+        private float mPendingZoom = 1;
+        private float mPendingFocusX;
+        private float mPendingFocusY;
+
+        //What to draw, handed from this thread to the render thread
+        private final TripleBuffer<RenderSnapshot> mSnapshots;
+        private final RenderThread mRenderThread;
 
-        private int mScore;
-        private int mMissedDots;
-
-
-        public GameThread(SurfaceHolder surfaceHolder, Context context, ScoreViewHandler scoreViewHandler, MissedViewHandler missedViewHandler) {
+        /**
+         * @param gridLength the number of dots along each side of a new board
+         * @param replay a recorded game to play instead of a new one; may be null
+         * @param replayMaxSpeed whether to play the replay as fast as possible
+         */
+        public GameThread(SurfaceHolder surfaceHolder, Context context, HudChannel hudChannel,
+                          SnapshotStore snapshotStore, int gridLength, ReplayPlayer replay,
+                          boolean replayMaxSpeed) {
             mSurfaceHolder = surfaceHolder;
             mContext = context;
-            mScoreViewHandler = scoreViewHandler;
-            mMissedViewHandler = missedViewHandler;
+            mHudChannel = hudChannel;
+            mSnapshotStore = snapshotStore;
 
             mRun = false;
             mBlock = false;
 
+            mFrameMetrics = FrameMetrics.ENABLED ? new FrameMetrics(NANOS_PER_TICK) : null;
+            mRenderThread = new RenderThread();
+            setTargetFps(DEFAULT_FPS);
+            mTickAccumulator = 0;
+
             mGameOver = false;
             mQuitRequested = false;
 
-            mDotGrid = new DotGrid(GRID_LENGTH);
-
-            //TODO remove when dots appear randomly
-//            for(Dot dot: mDotGrid) {
-//                int random = (int) (Math.random()*3);
-//                //if(random == 1) dot.setState(DotState.APPEARING);
-//                dot.setState(DotState.VISIBLE);
-//            }
-
-            mDotChain = new Stack<Dot>();
-            mInteracting = false;
-            mChainingLineX = 0;
-            mChainingLineY = 0;
+            if(replay != null && replay.getNanosPerTick() != NANOS_PER_TICK) {
+                Log.e("Replay", "The replay was recorded at a different tick rate");
+                replay = null;
+            }
+            if(replay != null) {
+                mReplay = replay;
+                mReplayMaxSpeed = replayMaxSpeed;
+                mEngine = replay.createEngine();
+                mClock = mEngine.getClock();
+                mReplay.deliver(mEngine); //whatever was recorded before the first tick
+            } else {
+                mClock = new FrameClock();
+                mEngine = new GameEngine(gridLength, System.nanoTime(), mClock);
+                if(RECORD_REPLAYS) {
+                    mRecorder = new ReplayRecorder(mEngine, NANOS_PER_TICK);
+                    mEngine.setRecorder(mRecorder);
+                }
+            }
+            mDotGrid = mEngine.getDotGrid();
+            mTouchEvents = new TouchEventQueue(TOUCH_QUEUE_CAPACITY);
+
+            mViewport = new Viewport();
+            mLargeBoard = mEngine.isLargeBoard();
+            int cores = Runtime.getRuntime().availableProcessors();
+            if(mLargeBoard && cores > 1) {
+                //The pool only starts its threads once a tick has enough transitions due to use it
+                mUpdateExecutor = Executors.newFixedThreadPool(cores - 1, new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "GameUpdate");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                mEngine.setUpdateExecutor(mUpdateExecutor, cores);
+            }
+            mScaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                @Override
+                public boolean onScale(ScaleGestureDetector detector) {
+                    synchronized (mGestureLock) {
+                        mPendingZoom *= detector.getScaleFactor();
+                        mPendingFocusX = detector.getFocusX();
+                        mPendingFocusY = detector.getFocusY();
+                    }
+                    return true;
+                }
+            });
 
-            mScore = 0;
-            mMissedDots = 0;
+            mSnapshots = new TripleBuffer<RenderSnapshot>(new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot());
+            resetHud();
         }
 
         @Override
         public void run() {
+            mRenderThread.start();
+
+            long previousStepTime = System.nanoTime();
             while(mRun) {
-                Canvas c = null;
+                long stepStartTime = System.nanoTime();
+                long stepDelta = stepStartTime - previousStepTime;
+                previousStepTime = stepStartTime;
+                if(mReplayMaxSpeed) {
+                    stepDelta = MAX_TICKS_PER_FRAME * NANOS_PER_TICK;
+                }
+
                 try {
-                    c = mSurfaceHolder.lockCanvas();
                     synchronized (mSurfaceHolder) {
+                        applyGestures();
+                        advanceSimulation(stepDelta);
+                        publishSnapshot();
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+
+                if(FrameMetrics.ENABLED) {
+                    mFrameMetrics.endFrame(System.nanoTime() - stepStartTime);
+                }
+
+                //Sleep until the next tick is due instead of spinning
+                if(!mReplayMaxSpeed) {
+                    sleepUntil(stepStartTime + NANOS_PER_TICK);
+                }
+
+                //Wait this thread when the Activity onPauses
+                if(waitWhilePaused()) { //don't try to simulate the time spent paused
+                    previousStepTime = System.nanoTime();
+                }
+            }
+
+            mRenderThread.finish(); //draws the last snapshot first
+            if(mUpdateExecutor != null) {
+                mUpdateExecutor.shutdown();
+            }
+            if(mRecorder != null) {
+                saveReplay();
+            }
+        }
 
-                        updateState();
+        /**
+         * Captures what the game looks like now for the render thread. The chaining line is
+         * extended to where the finger should be when the next frame is shown.
+         *
+         * The snapshot buffer takes a single writer. This is called from this thread's loop and
+         * from setSurfaceSize() on the UI thread, always with mSurfaceHolder held, and the lock is
+         * what keeps the two from writing at once and hands the back buffer between them.
+         */
+        private void publishSnapshot() {
+            if(!mSurfaceSized) {
+                return;
+            }
+            mEngine.predictChainingLine(SystemClock.uptimeMillis() + mNanosPerFrame / FrameClock.NANOS_PER_MILLI);
+            mSnapshots.getBack().capture(mEngine, mViewport, mLayout, mClock.nanoTime() + mTickAccumulator,
+                    System.nanoTime());
+            mSnapshots.publish();
+        }
+
+        /**
+         * Ends the recording and writes it out in the background. Only the latest game is kept.
+         */
+        private void saveReplay() {
+            final byte[] log;
+            synchronized (mSurfaceHolder) {
+                mRecorder.finish(mEngine);
+                log = mRecorder.toByteArray();
+            }
 
-                        if(c != null) {
-                            doDraw(c);
+            final File file = new File(mContext.getFilesDir(), REPLAY_FILENAME);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    FileOutputStream out = null;
+                    try {
+                        out = new FileOutputStream(file);
+                        out.write(log);
+                    } catch (IOException e) {
+                        Log.e("Replay", "Could not write " + file, e);
+                    } finally {
+                        if(out != null) {
+                            try {
+                                out.close();
+                            } catch (IOException e) {}
                         }
                     }
+                }
+            }, "ReplayWriter").start();
+        }
 
-                } catch (Exception e) {
-                    e.printStackTrace();
-                } finally {
-                    // Prevents the surface from being left in an inconsistent state in case of an
-                    // exception
-                    if (c != null) {
-                        mSurfaceHolder.unlockCanvasAndPost(c);
-                    }
+        /**
+         * Reports whether the replay played out as recorded, along with the frame metrics of the
+         * run, then stops the thread.
+         */
+        private void finishReplay() {
+            boolean matches = mReplay.matches(mEngine);
+            Log.i("Replay", (matches ? "Matched" : "DIVERGED") + " after " + mReplay.getTick() + " ticks: score "
+                    + mEngine.getScore() + " (recorded " + mReplay.getExpectedScore() + "), missed "
+                    + mEngine.getMissedDots() + " (recorded " + mReplay.getExpectedMissedDots() + ")");
+            if(FrameMetrics.ENABLED) {
+                mFrameMetrics.dump("Replay");
+            }
+            mRun = false;
+        }
+
+        /**
+         * Waits while the Activity is paused. Debug builds dump the simulation metrics gathered so
+         * far when the pause begins.
+         *
+         * @return whether the thread had to wait
+         */
+        private boolean waitWhilePaused() {
+            synchronized (mSurfaceHolder) {
+                if(!mBlock) {
+                    return false;
                 }
 
-                //Wait this thread when the Activity onPauses
-                synchronized (mSurfaceHolder) {
-                    while(mBlock) {
-                        try {
-                            mSurfaceHolder.wait();
-                        } catch (InterruptedException e) {}
+                if(FrameMetrics.ENABLED) {
+                    mFrameMetrics.dump("SimulationMetrics");
+
+                    TouchPredictor predictor = mEngine.getTouchPredictor();
+                    if(predictor.getEvaluatedPredictions() > 0) {
+                        Log.i("FrameMetrics", "Touch prediction error: mean " + predictor.getMeanError()
+                                + "px, max " + predictor.getMaxError() + "px over "
+                                + predictor.getEvaluatedPredictions() + " predictions");
+                        predictor.resetErrorStatistics();
                     }
                 }
+                while(mBlock) {
+                    try {
+                        mSurfaceHolder.wait();
+                    } catch (InterruptedException e) {}
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Runs as many fixed-length simulation ticks as the elapsed time calls for. The number of
+         * ticks per step is capped so that one slow step can't cause a spiral of ever longer
+         * catch-up steps; any time beyond the cap is dropped.
+         *
+         * Each tick moves the simulation clock forward by exactly one tick, so every state change
+         * within a tick shares one timestamp and the game does not advance while paused.
+         *
+         * @param stepDelta nanoseconds elapsed since the previous step
+         */
+        private void advanceSimulation(long stepDelta) {
+            mTickAccumulator += stepDelta;
+
+            int ticks = 0;
+            while(mTickAccumulator >= NANOS_PER_TICK && ticks < MAX_TICKS_PER_FRAME) {
+                mClock.advance(NANOS_PER_TICK);
+
+                long inputStartTime = FrameMetrics.ENABLED ? System.nanoTime() : 0;
+                if(mReplay != null) {
+                    mReplay.deliver(mEngine);
+                } else {
+                    handleInputs();
+                }
+                long updateStartTime = FrameMetrics.ENABLED ? System.nanoTime() : 0;
+                mEngine.update();
+                if(mReplay != null) {
+                    mReplay.deliver(mEngine); //what was recorded between this tick and the next
+                }
+                if(FrameMetrics.ENABLED) {
+                    mFrameMetrics.addPhaseTime(FrameMetrics.PHASE_INPUT, updateStartTime - inputStartTime);
+                    mFrameMetrics.addPhaseTime(FrameMetrics.PHASE_UPDATE, System.nanoTime() - updateStartTime);
+                }
+                if(mEngine.isGameOver()) {
+                    mGameOver = true;
+                    mRun = false;
+                }
+
+                mTickAccumulator -= NANOS_PER_TICK;
+                ticks++;
+
+                if(mReplay != null && mReplay.isEnded()) {
+                    finishReplay();
+                    break;
+                }
+            }
+            if(mTickAccumulator >= NANOS_PER_TICK) {
+                mTickAccumulator %= NANOS_PER_TICK;
+            }
+
+            if(mReplay != null && mSurfaceSized && mEngine.getPixelsPerDotRegion() != mLayoutPixelsPerDotRegion) {
+                layoutBoard(); //the replay changed the board size
+            }
+        }
+
+        /**
+         * Hands the queued touches to the engine in board coordinates.
+         */
+        private void handleInputs() {
+            TouchEventQueue events = mTouchEvents;
+            Viewport viewport = mViewport;
+            while(events.poll()) {
+                mEngine.onTouch(events.getAction(), viewport.toBoardX(events.getX()),
+                        viewport.toBoardY(events.getY()), events.getTime());
+            }
+        }
+
+        /**
+         * Pans and zooms by whatever the UI thread has gathered from gestures since the last step.
+         */
+        private void applyGestures() {
+            if(!mLargeBoard || !mSurfaceSized) {
+                return;
+            }
+
+            float panX, panY, zoom, focusX, focusY;
+            synchronized (mGestureLock) {
+                panX = mPendingPanX;
+                panY = mPendingPanY;
+                zoom = mPendingZoom;
+                focusX = mPendingFocusX;
+                focusY = mPendingFocusY;
+                mPendingPanX = 0;
+                mPendingPanY = 0;
+                mPendingZoom = 1;
+            }
+
+            if(panX != 0 || panY != 0 || zoom != 1) {
+                mViewport.zoom(zoom, focusX, focusY);
+                mViewport.pan(panX, panY);
+                onViewportChanged();
+            }
+        }
+
+        /**
+         * Moves the play area along with the viewport, and has the screen redrawn.
+         */
+        private void onViewportChanged() {
+            if(mLargeBoard && mReplay == null) { //a replay moves the play area as it was recorded
+                mEngine.setPlayArea(mViewport.getFirstPlayableRow(), mViewport.getFirstPlayableCol(),
+                        mViewport.getLastPlayableRow(), mViewport.getLastPlayableCol());
+            }
+            mLayout++;
+        }
+
+        private void sleepUntil(long deadline) {
+            long remaining = deadline - System.nanoTime();
+            if(remaining > 0) {
+                try {
+                    Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+                } catch (InterruptedException e) {}
+            }
+        }
+
+        /**
+         * Sets the frame rate the render thread paces its drawing to. The simulation tick rate is
+         * not affected.
+         *
+         * @param fps the number of frames to draw per second
+         */
+        public void setTargetFps(int fps) {
+            if(fps <= 0) {
+                throw new IllegalArgumentException("fps must be positive");
             }
+            mTargetFps = fps;
+            mNanosPerFrame = 1000000000L / fps;
+            mRenderThread.setFrameBudget(mNanosPerFrame);
+        }
+
+        public int getTargetFps() {
+            return mTargetFps;
         }
 
         /**
@@ -260,7 +667,7 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
         }
 
         /**
-         * Requests this thread to wait.
+         * Requests this thread and the render thread to wait.
          */
         public void onPause() {
             synchronized (mSurfaceHolder) {
@@ -269,7 +676,7 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
         }
 
         /**
-         * Requests this thread to continue.
+         * Requests this thread and the render thread to continue.
          */
         public void onResume() {
             synchronized (mSurfaceHolder) {
@@ -278,31 +685,48 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
             }
         }
 
+        /**
+         * Saves the game so it can be resumed on the next surface, or forgets the saved game if
+         * this one is over.
+         */
         public void saveState() {
             Log.e("THREAD", "saveState");
             synchronized (mSurfaceHolder) {
+                if(mReplay != null) {
+                    return; //replays are not resumed
+                }
                 if(!mGameOver && !mQuitRequested) {
-                    SharedPreferences.Editor editor =
-                            mContext.getSharedPreferences(GAME_STATE_FILENAME, Context.MODE_PRIVATE).edit();
-
-                    //List of variables to store
-                    //TODO: save all values
-//                    editor
-//                            .putInt(GAME_COUNTER, counter)
-//                            .commit();
+                    mSnapshotStore.save(mEngine);
+                } else {
+                    mSnapshotStore.clear();
                 }
             }
         }
 
+        /**
+         * Shows the engine's counters, which the render thread only publishes once they change.
+         */
+        private void resetHud() {
+            mHudChannel.reset(mEngine.getScore(), mEngine.getDotsToMiss() - mEngine.getMissedDots());
+        }
+
+        /**
+         * Resumes the saved game, if there is one. Call before the thread is started.
+         */
         public void restoreState() {
             Log.e("THREAD", "restoreState");
             synchronized (mSurfaceHolder) {
-                SharedPreferences sharedPreferences =
-                        mContext.getSharedPreferences(GAME_STATE_FILENAME, Context.MODE_PRIVATE);
+                if(mReplay != null) {
+                    return;
+                }
+                if(mSnapshotStore.restore(mEngine)) {
+                    mGameOver = mEngine.isGameOver();
+                    resetHud();
 
-                //List of variables to restore
-//                counter = sharedPreferences.getInt(GAME_COUNTER, 0);
-                //TODO: restore all values
+                    //A replay has to start from a new game
+                    mEngine.setRecorder(null);
+                    mRecorder = null;
+                }
 
                 //Clear the loaded state
                 clearState();
@@ -312,11 +736,7 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
         public void clearState() {
             Log.e("THREAD", "clearState");
             synchronized (mSurfaceHolder) {
-                SharedPreferences.Editor editor =
-                        mContext.getSharedPreferences(GAME_STATE_FILENAME, Context.MODE_PRIVATE).edit();
-
-                //Clear the saved game state
-                editor.clear().commit();
+                mSnapshotStore.clear();
             }
         }
 
@@ -334,7 +754,7 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
 
         /**
          * Called when the Surface size changes to store the updated canvas dimensions and related
-         * measurements.
+         * measurements. The render thread picks the new size up from the next snapshot.
          *
          * @see ca.brocku.dotscanvas.app.GameSurfaceView#surfaceChanged
          *
@@ -347,296 +767,646 @@ public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callba
                 mCanvasWidth = width;
                 mCanvasLength = height < width ? height : width;
 
-                mPixelsPerDotRegion = mCanvasLength/GRID_LENGTH;
-                mDotRadius = mPixelsPerDotRegion*2.0f/3.0f /2;
-                mMaxLineLength = (float) (1.5*mPixelsPerDotRegion);
-
-                for(Dot dot: mDotGrid) {
-                    dot.setCenterX(
-                            (float) ((float) dot.getRow() * mPixelsPerDotRegion + mPixelsPerDotRegion / 2.0));
-                    dot.setCenterY(
-                            (float) ((float) dot.getCol() * mPixelsPerDotRegion + mPixelsPerDotRegion / 2.0));
+                if(mReplay == null) { //a replay sets the board size it was recorded with
+                    //A large board keeps the dots the size they are on a default board
+                    int gridLength = mDotGrid.getGridLength();
+                    mEngine.setBoardSize(mLargeBoard ? mCanvasLength * gridLength / GameEngine.DEFAULT_GRID_LENGTH : mCanvasLength);
                 }
+
+                mViewport.setScreenSize(width, height);
+                mSurfaceSized = true;
+                layoutBoard();
+                publishSnapshot(); //on the UI thread, which is safe only because the lock is held
             }
 //            Log.i("SurfaceSize", "L: " + String.valueOf(mCanvasLength) + "; H: " + String.valueOf(mCanvasHeight) + "; W: " + String.valueOf(mCanvasWidth));
         }
 
-        public boolean onTouch(MotionEvent motionEvent) {
-            synchronized (mSurfaceHolder) {
-                float x = motionEvent.getX();
-                float y = motionEvent.getY();
-
-                switch (motionEvent.getAction()) {
-                    case MotionEvent.ACTION_DOWN:
-                        onTouchDown(x, y, motionEvent);
-                        break;
-                    case MotionEvent.ACTION_UP:
-                        onTouchUp(x, y, motionEvent);
-                        break;
-                    case MotionEvent.ACTION_MOVE:
-                        onTouchMove(x, y, motionEvent);
-                        break;
-                    case MotionEvent.ACTION_OUTSIDE:
-                        onTouchOutside(x, y, motionEvent);
-                        break;
+        /**
+         * Sets the viewport up for the current surface and board size. A small board is shown
+         * whole; a large board starts centered.
+         */
+        private void layoutBoard() {
+            float pixelsPerDotRegion = mEngine.getPixelsPerDotRegion();
+            mLayoutPixelsPerDotRegion = pixelsPerDotRegion;
+
+            mViewport.setBoard(mDotGrid.getGridLength(), pixelsPerDotRegion);
+            if(mLargeBoard) {
+                float defaultScale = mCanvasLength / (GameEngine.DEFAULT_GRID_LENGTH * pixelsPerDotRegion);
+                mViewport.setScaleLimits(mCanvasLength / (MAX_VISIBLE_DOTS * pixelsPerDotRegion), MAX_ZOOM * defaultScale);
+                if(!mViewportPlaced) {
+                    float middle = mDotGrid.getGridLength() * pixelsPerDotRegion / 2;
+                    mViewport.centerOn(middle, middle);
+                    mViewportPlaced = true;
                 }
-
-                return true;
+            } else {
+                mViewport.setScaleLimits(1, 1);
             }
+
+            onViewportChanged();
         }
 
-        private void onTouchDown(float x, float y, MotionEvent motionEvent) {
-            Log.i("Thread", "onTouchDown()");
-            mChainingLineX = x;
-            mChainingLineY = y;
+        /**
+         * Called on the UI thread. Touch events are queued for the game thread rather than handled
+         * here, so the UI thread never waits for the game thread to finish a step.
+         */
+        public boolean onTouch(MotionEvent motionEvent) {
+            if(mLargeBoard && handleGesture(motionEvent)) {
+                return true;
+            }
+            if(mReplay != null) {
+                return true;
+            }
 
-            for(Dot dot: mDotGrid) {
-                if(dot.isVisible() && isTouchWithinDot(x, y, dot, 1.4f)) {
-                    mDotChain.push(dot);
-                    //TODO animate dot
+            int action;
+            switch (motionEvent.getAction()) {
+                case MotionEvent.ACTION_DOWN:
+                    action = TouchEventQueue.ACTION_DOWN;
                     break;
-                }
+                case MotionEvent.ACTION_UP:
+                    action = TouchEventQueue.ACTION_UP;
+                    break;
+                case MotionEvent.ACTION_MOVE:
+                    action = TouchEventQueue.ACTION_MOVE;
+                    break;
+                case MotionEvent.ACTION_OUTSIDE:
+                    action = TouchEventQueue.ACTION_OUTSIDE;
+                    break;
+                default:
+                    return true;
             }
 
-            mInteracting = true;
-        }
+            int pointerId = motionEvent.getPointerId(0);
 
-        private void onTouchUp(float x, float y, MotionEvent motionEvent) {
-            Log.i("Thread", "onTouchUp()");
+            //A MOVE batches every sample since the last one; queue them all so fast swipes
+            //don't skip the dots in between
+            if(action == TouchEventQueue.ACTION_MOVE) {
+                for(int h = 0; h < motionEvent.getHistorySize(); h++) {
+                    mTouchEvents.offer(action, motionEvent.getHistoricalX(h), motionEvent.getHistoricalY(h),
+                            motionEvent.getHistoricalEventTime(h), pointerId);
+                }
+            }
 
-            updateScore();
+            mTouchEvents.offer(action, motionEvent.getX(), motionEvent.getY(),
+                    motionEvent.getEventTime(), pointerId);
+            return true;
+        }
 
-            //Hide all of the dots in the dot chain
-            for(Dot dot: mDotChain) {
-                dot.setState(DotState.DISAPPEARING);
+        /**
+         * Turns two finger drags into pans and pinches into zooms. A second finger abandons the
+         * chain being drawn, and touches are ignored until every finger is lifted. Called on the UI
+         * thread.
+         *
+         * @return whether the event belongs to a gesture
+         */
+        private boolean handleGesture(MotionEvent motionEvent) {
+            int action = motionEvent.getActionMasked();
+            if(action == MotionEvent.ACTION_POINTER_DOWN && !mGesturing) {
+                mGesturing = true;
+                if(mReplay == null) {
+                    mTouchEvents.offer(TouchEventQueue.ACTION_OUTSIDE, 0, 0, motionEvent.getEventTime(),
+                            motionEvent.getPointerId(0));
+                }
+            }
+            if(!mGesturing) {
+                return false;
             }
-            mDotChain.clear();
 
-            mInteracting = false;
+            mScaleDetector.onTouchEvent(motionEvent);
+            switch (action) {
+                case MotionEvent.ACTION_MOVE:
+                    float lastX = mLastFocusX;
+                    float lastY = mLastFocusY;
+                    updateFocus(motionEvent, -1);
+                    synchronized (mGestureLock) {
+                        mPendingPanX += mLastFocusX - lastX;
+                        mPendingPanY += mLastFocusY - lastY;
+                    }
+                    break;
+                case MotionEvent.ACTION_POINTER_DOWN:
+                    updateFocus(motionEvent, -1);
+                    break;
+                case MotionEvent.ACTION_POINTER_UP: //the lifted finger no longer counts
+                    updateFocus(motionEvent, motionEvent.getActionIndex());
+                    break;
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_CANCEL:
+                    mGesturing = false;
+                    break;
+            }
+            return true;
         }
 
-        private void onTouchMove(float x, float y, MotionEvent motionEvent) {
-            Log.i("Thread", "onTouchMove()");
+        /**
+         * Sets the gesture's focus to the average of the pointers, less the one at skipIndex.
+         */
+        private void updateFocus(MotionEvent motionEvent, int skipIndex) {
+            float sumX = 0, sumY = 0;
+            int count = 0;
+            for(int i = 0; i < motionEvent.getPointerCount(); i++) {
+                if(i != skipIndex) {
+                    sumX += motionEvent.getX(i);
+                    sumY += motionEvent.getY(i);
+                    count++;
+                }
+            }
+            if(count > 0) {
+                mLastFocusX = sumX / count;
+                mLastFocusY = sumY / count;
+            }
+        }
 
-            setInteractingCoordinates(x, y);
+        /**
+         * Draws the latest snapshot published by the game thread, at the target frame rate.
+         *
+         * Only the parts of the surface that changed are redrawn. The background and VISIBLE dots
+         * are kept in an off-screen layer which is copied into the dirty region before animating
+         * dots and the chain are drawn on top. What changed is found by comparing each snapshot
+         * with what was last drawn: the dots that became or stopped being VISIBLE, the dots that
+         * are or were animating, and wherever the chain was or now is. A new layout redraws
+         * everything.
+         *
+         * Everything here belongs to this thread; it shares nothing with the game thread but the
+         * snapshots, and never takes the lock the game thread simulates under.
+         */
+        private class RenderThread extends Thread {
+            private final FrameMetrics mRenderMetrics; //null unless FrameMetrics.ENABLED
+            private volatile boolean mRendering = true;
+
+            //Paints are allocated once so that drawing a frame does not allocate
+            private final Paint mDotPaint;
+            private final Paint mBackgroundPaint;
+
+            private DotSpriteAtlas mDotSprites; //animation frames for mSpriteRadius
+            private float mSpriteRadius; //the on-screen dot radius the sprites were rendered at
+            private float mSpriteScale = 1; //how much to scale the sprites by, while zooming
+            private Bitmap mStaticLayer;
+            private Canvas mStaticCanvas;
+            private final Rect mDirtyRect; //region to redraw in the current frame
+            private final Rect mDrawnChainBounds; //area covered by the chain when it was last drawn
+            private final Rect mChainBounds;
+
+            //What the last frame drew, copied out of its snapshot, which goes back to the game thread
+            private int mDrawnLayout = -1;
+            private int[] mDrawnVisible = new int[64];
+            private int mDrawnVisibleCount;
+            private int[] mDrawnAnimating = new int[64];
+            private int mDrawnAnimatingCount;
+
+            //Last counters sent to the HUD
+            private int mShownScore = -1;
+            private int mShownMissesLeft = -1;
+
+            RenderThread() {
+                super("GameRender");
+                mRenderMetrics = FrameMetrics.ENABLED ? new FrameMetrics(1000000000L / DEFAULT_FPS) : null;
+
+                mDotPaint = new Paint();
+                mDotPaint.setColor(COLOR_DOT);
+                mDotPaint.setStrokeWidth(LINE_WIDTH);
+
+                mBackgroundPaint = new Paint();
+                mBackgroundPaint.setColor(COLOR_BACKGROUND);
+
+                mDirtyRect = new Rect();
+                mDrawnChainBounds = new Rect();
+                mChainBounds = new Rect();
+            }
 
-            if(!mDotChain.isEmpty()) {
-                for(Dot dot: mDotGrid) {
-                    if(dot.isVisible() && isTouchWithinDot(x, y, dot, 1)) {
-                        if(!mDotChain.contains(dot) && isDotAdjacent(dot)) {
-                            mDotChain.push(dot);
-                            //TODO animate dot
+            void setFrameBudget(long nanosPerFrame) {
+                if(FrameMetrics.ENABLED) {
+                    mRenderMetrics.setFrameBudget(nanosPerFrame);
+                }
+            }
 
-                        }
-                        break;
-                    }
+            /**
+             * Stops the thread after it draws the latest snapshot, and waits for it to finish.
+             * Called by the game thread as it finishes.
+             */
+            void finish() {
+                synchronized (mSurfaceHolder) {
+                    mRendering = false;
+                    mSurfaceHolder.notifyAll();
+                }
+                boolean retry = true;
+                while(retry) {
+                    try {
+                        join();
+                        retry = false;
+                    } catch (InterruptedException e) {}
                 }
             }
-        }
 
-        private void onTouchOutside(float x, float y, MotionEvent motionEvent) {
-            Log.i("Thread", "onTouchOutside()");
-            mDotChain.clear();
-            mInteracting = false;
-        }
+            @Override
+            public void run() {
+                while(true) {
+                    boolean last = !mRendering; //checked first so the final snapshot is drawn
+                    long frameStartTime = System.nanoTime();
 
-        private void setInteractingCoordinates(float endX, float endY) {
-            if(!mDotChain.isEmpty()) {
-                Dot lastDot = mDotChain.peek();
-                float startX = lastDot.getCenterX();
-                float startY = lastDot.getCenterY();
+                    renderFrame();
 
-                //Lengths from the start to the end coordinates
-                float diffX = Math.abs(startX- endX);
-                float diffY = Math.abs(startY- endY);
+                    if(FrameMetrics.ENABLED) {
+                        mRenderMetrics.endFrame(System.nanoTime() - frameStartTime);
+                    }
+                    if(last) {
+                        break;
+                    }
 
-                if(diffX > mMaxLineLength || diffY > mMaxLineLength) { //if a length exceeds the max allowed
+                    //Sleep off whatever is left of this frame's budget instead of spinning
+                    sleepUntil(frameStartTime + mNanosPerFrame);
+                    waitWhilePaused();
+                }
+                if(FrameMetrics.ENABLED && mReplay != null) {
+                    mRenderMetrics.dump("Replay");
+                }
+            }
 
-                    //The factor represents how much larger the larger distance of the two is than the max length allowed
-                    float factor = (diffX >= diffY ? diffX/mMaxLineLength : diffY/mMaxLineLength);
+            private void waitWhilePaused() {
+                if(!mBlock) {
+                    return;
+                }
+                synchronized (mSurfaceHolder) {
+                    if(FrameMetrics.ENABLED && mBlock) {
+                        mRenderMetrics.dump("FrameMetrics");
+                    }
+                    while(mBlock && mRendering) {
+                        try {
+                            mSurfaceHolder.wait();
+                        } catch (InterruptedException e) {}
+                    }
+                }
+            }
 
-                    //Trim each axis' distance by the factor
-                    diffX /= factor;
-                    diffY /= factor;
+            /**
+             * Draws the latest snapshot, or carries on animating the last one if there is no newer
+             * one yet.
+             */
+            private void renderFrame() {
+                boolean fresh = mSnapshots.update();
+                RenderSnapshot snapshot = mSnapshots.getFront();
+                if(snapshot.getScreenWidth() == 0) { //nothing published yet
+                    return;
+                }
+                if(!fresh && snapshot.getAnimatingCount() == 0 && snapshot.getLayout() == mDrawnLayout) {
+                    return; //nothing has changed
+                }
 
-                    //Adjust ending coordinates
-                    if(startX- endX > 0) {
-                        mChainingLineX = startX-diffX;
-                    } else if(startX- endX < 0) {
-                        mChainingLineX = startX+diffX;
+                Canvas c = null;
+                boolean drawn = false;
+                try {
+                    if(fresh) {
+                        publishCounters(snapshot);
                     }
-                    if(startY- endY > 0) {
-                        mChainingLineY = startY-diffY;
-                    } else if(startY- endY < 0) {
-                        mChainingLineY = startY+diffY;
+                    if(!collectDirtyRegion(snapshot, fresh)) {
+                        return;
                     }
 
-                } else { //line length within limit, set values
-                    mChainingLineX = endX;
-                    mChainingLineY = endY;
+                    c = mSurfaceHolder.lockCanvas(mDirtyRect); //may grow the dirty rect
+                    if(c != null) {
+                        long drawStartTime = FrameMetrics.ENABLED ? System.nanoTime() : 0;
+                        if(BuildConfig.DEBUG) {
+                            doDrawCountingAllocations(c, snapshot);
+                        } else {
+                            doDraw(c, snapshot);
+                        }
+                        if(FrameMetrics.ENABLED) {
+                            mRenderMetrics.addPhaseTime(FrameMetrics.PHASE_DRAW, System.nanoTime() - drawStartTime);
+                        }
+                        drawn = true;
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    // Prevents the surface from being left in an inconsistent state in case of an
+                    // exception
+                    if (c != null) {
+                        long postStartTime = FrameMetrics.ENABLED ? System.nanoTime() : 0;
+                        mSurfaceHolder.unlockCanvasAndPost(c);
+                        if(FrameMetrics.ENABLED) {
+                            mRenderMetrics.addPhaseTime(FrameMetrics.PHASE_POST, System.nanoTime() - postStartTime);
+                        }
+                    }
+                }
+
+                if(drawn) {
+                    rememberDrawn(snapshot);
+                } else {
+                    //The surface missed this frame, and the static layer may already be ahead of
+                    //it, so the next frame is drawn in full
+                    mDrawnLayout = -1;
                 }
             }
-        }
 
-        private boolean isTouchWithinDot(float x, float y, Dot dot, float radiusFactor) {
-            float diffX = Math.abs(x - dot.getCenterX());
-            float diffY = Math.abs(y - dot.getCenterY());
+            private void publishCounters(RenderSnapshot snapshot) {
+                if(snapshot.getScore() != mShownScore || snapshot.getMissesLeft() != mShownMissesLeft) {
+                    mShownScore = snapshot.getScore();
+                    mShownMissesLeft = snapshot.getMissesLeft();
+                    mHudChannel.publish(mShownScore, mShownMissesLeft);
+                }
+            }
 
-            return (diffX <= mDotRadius*radiusFactor && diffY <= mDotRadius*radiusFactor);
-        }
+            /**
+             * Brings the static layer up to date with the snapshot and works out which part of the
+             * surface must be redrawn.
+             *
+             * @param fresh whether the snapshot hasn't been drawn before
+             * @return whether anything needs to be redrawn
+             */
+            private boolean collectDirtyRegion(RenderSnapshot snapshot, boolean fresh) {
+                mDirtyRect.setEmpty();
+
+                boolean relayout = snapshot.getLayout() != mDrawnLayout;
+                boolean settled = !relayout && snapshot.getScreenDotRadius() != mSpriteRadius; //the zoom stopped
+                if(relayout || settled) {
+                    layOut(snapshot, settled);
+                    mDirtyRect.set(0, 0, snapshot.getScreenWidth(), snapshot.getScreenHeight());
+                } else if(fresh) {
+                    updateStaticLayer(snapshot);
+                }
 
-        private boolean isDotAdjacent(Dot dot) {
-            if(!mDotChain.isEmpty()) {
-                Dot lastDot = mDotChain.peek();
+                //Animating dots, including those that stopped animating since the last frame
+                int[] animating = snapshot.getAnimatingIds();
+                for(int i = 0; i < snapshot.getAnimatingCount(); i++) {
+                    addDirtyDot(snapshot, animating[i]);
+                }
+                for(int i = 0; i < mDrawnAnimatingCount; i++) {
+                    addDirtyDot(snapshot, mDrawnAnimating[i]);
+                }
 
-                //Check if dot is adjacent to the last selected dot
-                if(Math.abs(dot.getRow() - lastDot.getRow()) <= 1 && Math.abs(dot.getCol()-lastDot.getCol()) <= 1) {
-                    return true;
+                if(fresh) {
+                    mDirtyRect.union(mDrawnChainBounds);
+                    computeChainBounds(snapshot, mChainBounds);
+                    mDirtyRect.union(mChainBounds);
                 }
+                return !mDirtyRect.isEmpty();
             }
 
-            return false;
-        }
+            /**
+             * Sets the layers up for a new layout. While the dots are changing size, e.g. during a
+             * pinch, the sprites are scaled; they are rendered again at the new size once the
+             * layout holds for a frame.
+             *
+             * @param rebuildSprites whether to render the sprites at the current dot radius
+             */
+            private void layOut(RenderSnapshot snapshot, boolean rebuildSprites) {
+                int width = snapshot.getScreenWidth();
+                int height = snapshot.getScreenHeight();
+                if(mStaticLayer == null || mStaticLayer.getWidth() != width || mStaticLayer.getHeight() != height) {
+                    if(mStaticLayer != null) {
+                        mStaticLayer.recycle();
+                    }
+                    mStaticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                    mStaticCanvas = new Canvas(mStaticLayer);
+                }
+
+                float radius = snapshot.getScreenDotRadius();
+                if(mDotSprites == null || rebuildSprites) {
+                    if(mDotSprites != null) {
+                        mDotSprites.recycle();
+                    }
+                    mSpriteRadius = radius;
+                    mDotSprites = new DotSpriteAtlas(radius, ANIMATION_FRAMES, mDotPaint);
+                }
+                mSpriteScale = radius / mSpriteRadius;
 
-        private void updateScore() {
-            if(!mDotChain.isEmpty()) {
-                mScore += Math.pow(mDotChain.size(), 2);
+                mStaticCanvas.drawColor(COLOR_BACKGROUND);
+                int[] visible = snapshot.getVisibleIds();
+                for(int i = 0; i < snapshot.getVisibleCount(); i++) {
+                    mStaticCanvas.drawCircle(snapshot.getScreenX(visible[i]), snapshot.getScreenY(visible[i]),
+                            radius, mDotPaint);
+                }
+                mDrawnLayout = snapshot.getLayout();
             }
 
-            Message message = mScoreViewHandler.obtainMessage();
-            Bundle bundle = new Bundle();
-            bundle.putInt(GAME_SCORE, mScore);
-            message.setData(bundle);
-            mScoreViewHandler.sendMessage(message);
-        }
+            /**
+             * Redraws the regions of the static layer whose dots became or stopped being VISIBLE
+             * since the last frame, walking the two sorted lists of VISIBLE dots side by side.
+             */
+            private void updateStaticLayer(RenderSnapshot snapshot) {
+                int[] visible = snapshot.getVisibleIds();
+                int count = snapshot.getVisibleCount();
+                int i = 0, j = 0;
+                while(i < count || j < mDrawnVisibleCount) {
+                    int now = i < count ? visible[i] : Integer.MAX_VALUE;
+                    int before = j < mDrawnVisibleCount ? mDrawnVisible[j] : Integer.MAX_VALUE;
+                    if(now == before) {
+                        i++;
+                        j++;
+                    } else if(now < before) { //became VISIBLE
+                        redrawStaticDot(snapshot, now, true);
+                        i++;
+                    } else { //stopped being VISIBLE
+                        redrawStaticDot(snapshot, before, false);
+                        j++;
+                    }
+                }
+            }
 
-        private void updateMissedByOne() {
-            mMissedDots++;
+            private void redrawStaticDot(RenderSnapshot snapshot, int id, boolean visible) {
+                float x = snapshot.getScreenX(id);
+                float y = snapshot.getScreenY(id);
+                float half = snapshot.getScreenRegionSize() / 2;
+                mStaticCanvas.drawRect(x - half, y - half, x + half, y + half, mBackgroundPaint);
+                if(visible) {
+                    mStaticCanvas.drawCircle(x, y, snapshot.getScreenDotRadius(), mDotPaint);
+                }
+                addDirtyDot(snapshot, id);
+            }
 
-            Message message = mMissedViewHandler.obtainMessage();
-            Bundle bundle = new Bundle();
-            bundle.putInt(GAME_MISSED, DOTS_TO_MISS-mMissedDots);
-            message.setData(bundle);
-            mMissedViewHandler.sendMessage(message);
-        }
+            /**
+             * Adds the area a dot is drawn in to the dirty region.
+             */
+            private void addDirtyDot(RenderSnapshot snapshot, int id) {
+                float x = snapshot.getScreenX(id);
+                float y = snapshot.getScreenY(id);
+                int extent = (int) (mDotSprites.getExtent() * mSpriteScale) + 1; //covers both sprites and drawn dots
+                mDirtyRect.union((int) x - extent, (int) y - extent, (int) x + extent, (int) y + extent);
+            }
 
-        private void updateState() {
-            for(Dot dot: mDotGrid) {
-                long stateDuration = dot.getStateDuration();
+            /**
+             * Computes the area covered by the chain lines, or an empty rect if they are not drawn.
+             */
+            private void computeChainBounds(RenderSnapshot snapshot, Rect bounds) {
+                bounds.setEmpty();
+                if(snapshot.getChainVertexCount() == 0) {
+                    return;
+                }
 
-                switch (dot.getState()) {
-                    case VISIBLE:
-                        if(stateDuration > DURATION_VISIBLE) {
-                            dot.setState(DotState.DISAPPEARING);
-                            updateMissedByOne();
-                            if(mMissedDots >= DOTS_TO_MISS) {
-                                mRun = false;
-                            }
-                        }
-                        break;
-                    case DISAPPEARING:
-                        if(stateDuration > DURATION_ANIMATION) {
-                            dot.setState(DotState.INVISIBLE);
-                        }
-                        break;
-                    case INVISIBLE: //TODO make insane algorithm to determine when a dot should appear
-                        if(stateDuration > 2000) {
-                            if((int)(Math.random()*800) == 1) {
-                                dot.setState(DotState.APPEARING);
-                            }
-                        }
-                        break;
-                    case APPEARING:
-                        if(stateDuration > DURATION_ANIMATION) {
-                            dot.setState(DotState.VISIBLE);
-                        }
-                        break;
+                //Every line starts at a dot and the last ends at the chaining line, so the line
+                //vertices cover all of the points drawn
+                float[] vertices = snapshot.getChainVertices();
+                float left = vertices[0], right = left;
+                float top = vertices[1], bottom = top;
+                for(int i = 2; i < snapshot.getChainVertexCount(); i += 2) {
+                    left = Math.min(left, vertices[i]);
+                    right = Math.max(right, vertices[i]);
+                    top = Math.min(top, vertices[i + 1]);
+                    bottom = Math.max(bottom, vertices[i + 1]);
                 }
+
+                float scale = snapshot.getScale();
+                int extent = (int) (LINE_WIDTH * scale / 2) + 2;
+                bounds.set((int) ((left - snapshot.getOffsetX()) * scale) - extent,
+                        (int) ((top - snapshot.getOffsetY()) * scale) - extent,
+                        (int) ((right - snapshot.getOffsetX()) * scale) + extent,
+                        (int) ((bottom - snapshot.getOffsetY()) * scale) + extent);
             }
-        }
 
-        private void doDraw(Canvas canvas) {
-            canvas.drawColor(Color.rgb(51,51,51)); //clear the screen
+            /**
+             * Redraws the dirty region. The canvas is clipped to it by lockCanvas(Rect), so
+             * everything outside it keeps what was drawn in earlier frames.
+             */
+            private void doDraw(Canvas canvas, RenderSnapshot snapshot) {
+                //Restore the background and VISIBLE dots underneath whatever changed
+                canvas.drawBitmap(mStaticLayer, mDirtyRect, mDirtyRect, null);
+
+                //Animate as of the present moment: the snapshot's time plus however long ago it
+                //was taken, within reason
+                long sinceCapture = Math.min(System.nanoTime() - snapshot.getCapturedAt(), MAX_TICKS_PER_FRAME * NANOS_PER_TICK);
+                long drawTime = (snapshot.getSimulationTime() + sinceCapture) / FrameClock.NANOS_PER_MILLI;
+
+                //Draw animating dots
+                int[] animating = snapshot.getAnimatingIds();
+                for(int i = 0; i < snapshot.getAnimatingCount(); i++) {
+                    float progress = (float) (drawTime - snapshot.getAnimationStartTime(i))/ GameEngine.DURATION_ANIMATION;
+                    mDotSprites.draw(canvas, snapshot.getScreenX(animating[i]), snapshot.getScreenY(animating[i]),
+                            snapshot.isAppearing(i) ? progress : 1 - progress, mSpriteScale);
+                }
+
+                //Draw lines
+                mDrawnChainBounds.set(mChainBounds);
+                if(snapshot.getChainVertexCount() > 0) {
+                    //The chain is in board coordinates; map them to the screen
+                    float scale = snapshot.getScale();
+                    canvas.save();
+                    canvas.translate(-snapshot.getOffsetX() * scale, -snapshot.getOffsetY() * scale);
+                    canvas.scale(scale, scale);
+
+                    //Draw the lines between chained dots and the unconnected line in one call
+                    canvas.drawLines(snapshot.getChainVertices(), 0, snapshot.getChainVertexCount(), mDotPaint);
+                    canvas.restore();
+                }
+            }
 
-            Paint paint = new Paint();
-            paint.setColor(Color.rgb(237,17,100));
-            paint.setStrokeWidth(15);
+            /**
+             * Copies the dots the snapshot showed, for comparing with the next one.
+             */
+            private void rememberDrawn(RenderSnapshot snapshot) {
+                if(mDrawnVisible.length < snapshot.getVisibleCount()) {
+                    mDrawnVisible = new int[snapshot.getVisibleIds().length];
+                }
+                System.arraycopy(snapshot.getVisibleIds(), 0, mDrawnVisible, 0, snapshot.getVisibleCount());
+                mDrawnVisibleCount = snapshot.getVisibleCount();
 
-            //Draw dots
-            for(Dot dot: mDotGrid) {
-                switch (dot.getState()) {
-                    case VISIBLE:
-                        canvas.drawCircle(dot.getCenterX(), dot.getCenterY(), mDotRadius, paint);
-                        break;
-                    case DISAPPEARING:
-                        //Determine how far into the animation we are
-                        float dFactor = 1 - ((float) dot.getStateDuration()/ DURATION_ANIMATION);
-                        //Set Radius
-                        float dRadius = mDotRadius * dFactor;
-                        //Set Paint
-                        Paint dPaint = new Paint();
-                        dPaint.set(paint);
-                        dPaint.setAlpha((int) (255 * dFactor));
-
-                        canvas.drawCircle(dot.getCenterX(), dot.getCenterY(), dRadius, dPaint);
-                        break;
-                    case APPEARING:
-                        //Determine how far into the animation we are
-                        float aFactor = (float) dot.getStateDuration()/ DURATION_ANIMATION;
-                        //Set Radius
-                        float aRadius = mDotRadius * aFactor;
-                        //Set Paint
-                        Paint aPaint = new Paint();
-                        aPaint.set(paint);
-                        aPaint.setAlpha((int) (255 * aFactor));
-
-                        canvas.drawCircle(dot.getCenterX(), dot.getCenterY(), aRadius, aPaint);
-                        break;
+                if(mDrawnAnimating.length < snapshot.getAnimatingCount()) {
+                    mDrawnAnimating = new int[snapshot.getAnimatingIds().length];
                 }
+                System.arraycopy(snapshot.getAnimatingIds(), 0, mDrawnAnimating, 0, snapshot.getAnimatingCount());
+                mDrawnAnimatingCount = snapshot.getAnimatingCount();
             }
 
-            //Draw lines
-            if(mInteracting) {
-                //Draw lines between chained dots
-                {
-                    Iterator<Dot> iterator = mDotChain.iterator();
-                    if(iterator.hasNext()) {
-                        Dot startDot = iterator.next();
-                        float startX = startDot.getCenterX();
-                        float startY = startDot.getCenterY();
+            /**
+             * Debug-build wrapper around doDraw() which logs any frame that allocates. Steady-state
+             * frames are expected to allocate nothing.
+             */
+            private void doDrawCountingAllocations(Canvas canvas, RenderSnapshot snapshot) {
+                Debug.resetThreadAllocSize();
+                Debug.startAllocCounting();
+                doDraw(canvas, snapshot);
+                Debug.stopAllocCounting();
+
+                int allocated = Debug.getThreadAllocSize();
+                if(allocated > 0) {
+                    Log.w("Thread", "doDraw() allocated " + allocated + " bytes");
+                }
+            }
+        }
+    }
 
-                        while(iterator.hasNext()) {
-                            Dot endDot = iterator.next();
+    /**
+     * Carries the score and the number of misses left from the render thread to the UI thread.
+     *
+     * The render thread publishes both counters as one packed long, so the UI always sees a
+     * consistent pair and publishing never allocates. At most one update is queued on the UI thread
+     * at a time: publishing again before it runs just replaces the values it will show. The views
+     * therefore change at most once per message, however many events the game produces.
+     *
+     * Updates are posted with a Handler rather than a Choreographer frame callback because
+     * Choreographer needs API 16 and the app supports API 10. They still follow the display: the
+     * render thread publishes once per frame it draws, and lockCanvas() paces those frames to the
+     * display's refresh, so the views change at most once per frame.
+     */
+    private class HudChannel {
+        private final AtomicLong mSnapshot = new AtomicLong(); //set by reset() for each game
+        private final AtomicBoolean mPending = new AtomicBoolean(false);
+        private final Handler mHandler = new Handler(); //created on the UI thread
+
+        //Last values shown, and buffers to format them into without allocating
+        private int mShownScore;
+        private int mShownMissed;
+        private final char[] mScoreChars = new char[11];
+        private final char[] mMissedChars = new char[11];
+
+        private final Runnable mApply = new Runnable() {
+            @Override
+            public void run() {
+                mPending.set(false); //anything published from here on gets a new update
+                long snapshot = mSnapshot.get();
+
+                int score = (int) (snapshot >> 32);
+                if(score != mShownScore && mScoreView != null) {
+                    mShownScore = score;
+                    setNumber(mScoreView, mScoreChars, score);
+                }
 
-                            canvas.drawLine(startX, startY, endDot.getCenterX(), endDot.getCenterY(), paint);
-                            startX = endDot.getCenterX();
-                            startY = endDot.getCenterY();
-                        }
-                    }
+                int missed = (int) snapshot;
+                if(missed != mShownMissed && mMissedView != null) {
+                    mShownMissed = missed;
+                    setNumber(mMissedView, mMissedChars, missed);
                 }
+            }
+        };
+
+        /**
+         * Shows the counters a game starts with, whatever its miss limit. Called on the UI thread
+         * before the game's render thread starts publishing.
+         */
+        public void reset(int score, int missesLeft) {
+            mSnapshot.set(pack(score, missesLeft));
+            mShownScore = score;
+            mShownMissed = missesLeft;
+            if(mScoreView != null) {
+                setNumber(mScoreView, mScoreChars, score);
+            }
+            if(mMissedView != null) {
+                setNumber(mMissedView, mMissedChars, missesLeft);
+            }
+        }
 
-                //Draw unconnected line
-                Dot lastDot = mDotChain.peek();
-                float startX = lastDot.getCenterX();
-                float startY = lastDot.getCenterY();
-                canvas.drawLine(startX, startY, mChainingLineX, mChainingLineY, paint);
+        /**
+         * Called from the render thread with the latest counters.
+         */
+        public void publish(int score, int missesLeft) {
+            mSnapshot.set(pack(score, missesLeft));
+            if(mPending.compareAndSet(false, true)) {
+                mHandler.post(mApply);
             }
         }
-    }
 
-    private class ScoreViewHandler extends Handler {
-        @Override
-        public void handleMessage(Message msg) {
-            String score = String.valueOf(msg.getData().getInt(GameThread.GAME_SCORE));
-            mScoreView.setText(score);
+        private long pack(int score, int missesLeft) {
+            return ((long) score << 32) | (missesLeft & 0xFFFFFFFFL);
         }
-    }
 
-    private class MissedViewHandler extends Handler {
-        @Override
-        public void handleMessage(Message msg) {
-            String missed = String.valueOf(msg.getData().getInt(GameThread.GAME_MISSED));
-            mMissedView.setText(missed);
+        private void setNumber(TextView view, char[] chars, int value) {
+            int start = chars.length;
+            long remaining = Math.abs((long) value);
+            do {
+                chars[--start] = (char) ('0' + remaining % 10);
+                remaining /= 10;
+            } while(remaining > 0);
+            if(value < 0) {
+                chars[--start] = '-';
+            }
+            view.setText(chars, start, chars.length - start);
         }
     }
-}
\ No newline at end of file
+}
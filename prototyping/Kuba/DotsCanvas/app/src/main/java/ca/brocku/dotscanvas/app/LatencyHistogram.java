@@ -0,0 +1,100 @@
+package ca.brocku.dotscanvas.app;
+
+/**
+ * A fixed-size histogram of durations in nanoseconds, bucketed log-linearly in the style of
+ * HdrHistogram: every power of two is split into SUB_BUCKETS equal buckets, so any recorded value
+ * is known to within about 6%. All storage is allocated up front; recording never allocates.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40; //values up to 2^40 ns (about 18 minutes)
+
+    private final long[] counts;
+    private long totalCount;
+    private long maxValue;
+
+    public LatencyHistogram() {
+        counts = new long[(MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS];
+    }
+
+    public void record(long nanos) {
+        if(nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucketOf(nanos)]++;
+        totalCount++;
+        if(nanos > maxValue) {
+            maxValue = nanos;
+        }
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return an upper bound on the value below which the given percentage of recorded values
+     *         fall, or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(totalCount == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(totalCount * percentile / 100);
+        if(target < 1) {
+            target = 1;
+        }
+        long seen = 0;
+        for(int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if(seen >= target) {
+                return Math.min(highestValueIn(bucket), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void reset() {
+        for(int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        totalCount = 0;
+        maxValue = 0;
+    }
+
+    /**
+     * Values below SUB_BUCKETS get a bucket each. Above that, a value's magnitude (the position
+     * of its highest bit) picks a group of SUB_BUCKETS buckets and the next SUB_BUCKET_BITS bits
+     * pick the bucket within it.
+     */
+    private static int bucketOf(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if(magnitude < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        if(magnitude > MAX_MAGNITUDE) {
+            magnitude = MAX_MAGNITUDE;
+            value = (1L << (MAX_MAGNITUDE + 1)) - 1;
+        }
+        int group = magnitude - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return group * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueIn(int bucket) {
+        int group = bucket / SUB_BUCKETS;
+        int subBucket = bucket % SUB_BUCKETS;
+        if(group == 0) {
+            return subBucket;
+        }
+        int shift = group - 1;
+        return (((long) (SUB_BUCKETS + subBucket + 1)) << shift) - 1;
+    }
+}
@@ -7,7 +7,19 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.TextView;
 
+import java.io.File;
+
+import ca.brocku.dotscanvas.app.gameboard.GameEngine;
+
 public class MainActivity extends ActionBarActivity {
+    //Intent extras for playing back a recorded game, e.g.
+    //adb shell am start -n ca.brocku.dotscanvas.app/.MainActivity --es replay replay.bin --ez replay_max_speed true
+    public static final String EXTRA_REPLAY = "replay";
+    public static final String EXTRA_REPLAY_MAX_SPEED = "replay_max_speed";
+
+    //Intent extra for the board size, e.g. --ei grid_length 1000 for a board to pan and zoom around
+    public static final String EXTRA_GRID_LENGTH = "grid_length";
+
     private GameSurfaceView mGameSurfaceView;
     private TextView mScoreTextView, mMissedTextView;
 
@@ -23,6 +35,13 @@ public class MainActivity extends ActionBarActivity {
 
         mGameSurfaceView.setScoreView(mScoreTextView);
         mGameSurfaceView.setMissedView(mMissedTextView);
+
+        String replay = getIntent().getStringExtra(EXTRA_REPLAY);
+        if(replay != null) {
+            mGameSurfaceView.setReplay(new File(getFilesDir(), replay),
+                    getIntent().getBooleanExtra(EXTRA_REPLAY_MAX_SPEED, false));
+        }
+        mGameSurfaceView.setGridLength(getIntent().getIntExtra(EXTRA_GRID_LENGTH, GameEngine.DEFAULT_GRID_LENGTH));
     }
 
     @Override
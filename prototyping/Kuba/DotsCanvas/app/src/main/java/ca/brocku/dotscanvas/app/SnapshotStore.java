@@ -0,0 +1,54 @@
+package ca.brocku.dotscanvas.app;
+
+import java.nio.ByteBuffer;
+
+import ca.brocku.dotscanvas.app.gameboard.GameEngine;
+import ca.brocku.dotscanvas.app.gameboard.GameSnapshot;
+
+/**
+ * Holds the saved game: the latest GameSnapshot, in memory. A saved game lasts as long as the
+ * view that owns the store, so a game paused when its surface goes away is resumed on the next
+ * surface, and a new launch starts a new game as it always has.
+ *
+ * Nothing is written to disk. A launch never resumes a saved game, so a file would only ever be
+ * written and never read back; saving and restoring are just encoding and decoding, which take
+ * microseconds for a normal board on whichever thread calls them.
+ */
+class SnapshotStore {
+    //Guarded by mSnapshot
+    private final GameSnapshot mSnapshot;
+    private ByteBuffer mSaved; //the saved game in mSnapshot's buffer, or null if there is none
+
+    public SnapshotStore() {
+        mSnapshot = new GameSnapshot();
+    }
+
+    /**
+     * Saves the engine's state, replacing any saved game.
+     */
+    public void save(GameEngine engine) {
+        synchronized (mSnapshot) {
+            mSaved = mSnapshot.encode(engine);
+        }
+    }
+
+    /**
+     * Restores the saved game into the engine.
+     *
+     * @return whether there was a saved game for this engine's board and it was restored
+     */
+    public boolean restore(GameEngine engine) {
+        synchronized (mSnapshot) {
+            return mSaved != null && GameSnapshot.decode(mSaved.duplicate(), engine);
+        }
+    }
+
+    /**
+     * Forgets the saved game.
+     */
+    public void clear() {
+        synchronized (mSnapshot) {
+            mSaved = null;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import java.util.Arrays;
+
+/**
+ * Finds the highest scoring chain that can be swiped on a grid right now. A chain of n dots scores
+ * n*n, so that is the longest path through VISIBLE dots where each step moves to one of the eight
+ * neighbouring dots, without visiting a dot twice.
+ *
+ * A chain can't leave the group of touching VISIBLE dots it starts in, so the dots are split into
+ * these connected groups and each group is searched on its own, largest first, until no group left
+ * is bigger than the best chain found. Groups of at most 64 dots, which covers every group on a
+ * default board and nearly every group on a large one, are searched exhaustively as bitmasks: a
+ * depth first search which grows the chain from each dot. It gives up on a chain once the dots
+ * still reachable from its end are too few to beat the best chain, and remembers for each end and
+ * set of reachable dots it has been through how far the chain could at most be extended. Larger
+ * groups are walked greedily from every dot, always stepping to the neighbour with the fewest free
+ * neighbours of its own (Warnsdorff's rule).
+ *
+ * The search stops once its time budget is used up and returns the best chain found so far; see
+ * isOptimal(). A solver is meant to be reused, so that solving only allocates when a grid has more
+ * VISIBLE dots than any grid it was used on before.
+ */
+public class ChainSolver {
+    private static final int MAX_MASKED_DOTS = 64;
+    private static final int NEIGHBORS = 8;
+    private static final int TIME_CHECK_INTERVAL = 1024; //search steps between clock reads
+
+    private static final int MEMO_SHIFT = 14;
+    private static final int MEMO_SIZE = 1 << MEMO_SHIFT;
+    private static final int NOT_MEMOIZED = -1;
+
+    //The VISIBLE dots in ascending ID order; dots are numbered by their position in here
+    private int[] ids = new int[MAX_MASKED_DOTS];
+    private int count;
+    private int[] neighbors = new int[MAX_MASKED_DOTS * NEIGHBORS]; //NEIGHBORS per dot
+    private int[] degrees = new int[MAX_MASKED_DOTS];
+    private final int[] neighborIds = new int[NEIGHBORS];
+    private final DotCollector dotCollector = new DotCollector();
+
+    //The connected groups: the dots of each group are consecutive in members
+    private int[] members = new int[MAX_MASKED_DOTS];
+    private int[] groupStarts = new int[MAX_MASKED_DOTS + 1];
+    private int groups;
+    private int[] groupOf = new int[MAX_MASKED_DOTS];
+
+    //Exhaustive search over a group, by bit within the group
+    private final long[] masks = new long[MAX_MASKED_DOTS]; //each dot's neighbours in the group
+    private final int[] path = new int[MAX_MASKED_DOTS];
+    private final long[][] candidates = new long[MAX_MASKED_DOTS][NEIGHBORS];
+    private final long[] memoKeys = new long[MEMO_SIZE]; //the reachable dots
+    private final byte[] memoEnds = new byte[MEMO_SIZE]; //the end of the chain
+    private final byte[] memoLengths = new byte[MEMO_SIZE]; //bound on the extension; NOT_MEMOIZED if empty
+
+    //Greedy walks over a larger group
+    private int[] visited = new int[MAX_MASKED_DOTS]; //by dot; equal to walk when visited on it
+    private int walk;
+    private int[] walkPath = new int[MAX_MASKED_DOTS];
+
+    private long deadline;
+    private int steps;
+    private boolean timedOut;
+    private boolean optimal;
+
+    private int[] best = new int[MAX_MASKED_DOTS]; //the best chain, as dot IDs
+    private int bestLength;
+
+    /**
+     * Searches the grid for the longest chain of VISIBLE dots.
+     *
+     * @param budgetNanos how long to search for; the best chain found by then is kept
+     * @return the length of the chain found, which is 0 if no dots are VISIBLE
+     */
+    public int solve(DotGrid grid, long budgetNanos) {
+        deadline = System.nanoTime() + budgetNanos;
+        steps = 0;
+        timedOut = false;
+        optimal = true;
+        bestLength = 0;
+
+        collectDots(grid);
+        collectGroups();
+
+        //Largest groups first, as only a group bigger than the best chain so far can hold a longer one
+        for(int size = count; size > bestLength && !timedOut; ) {
+            int nextSize = 0;
+            for(int g = 0; g < groups && !timedOut; g++) {
+                int groupSize = groupStarts[g + 1] - groupStarts[g];
+                if(groupSize == size && size > bestLength) {
+                    if(groupSize <= MAX_MASKED_DOTS) {
+                        searchGroup(g);
+                    } else {
+                        walkGroup(g);
+                        optimal = false;
+                    }
+                } else if(groupSize < size && groupSize > nextSize) {
+                    nextSize = groupSize;
+                }
+            }
+            size = nextSize;
+        }
+
+        if(timedOut) {
+            optimal = false;
+        }
+        return bestLength;
+    }
+
+    /**
+     * @return the chain found by the last solve(), in swiping order; only the first
+     *         getChainLength() IDs are part of it
+     */
+    public int[] getChain() {
+        return best;
+    }
+
+    public int getChainLength() {
+        return bestLength;
+    }
+
+    /**
+     * @return what the chain found by the last solve() would score
+     */
+    public int getScore() {
+        return bestLength * bestLength;
+    }
+
+    /**
+     * @return whether the last solve() proved no longer chain exists, rather than running out of
+     *         time or walking a group too large to search exhaustively
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * Numbers the VISIBLE dots and looks up which of them neighbour each other.
+     */
+    private void collectDots(DotGrid grid) {
+        count = grid.getCount(DotState.VISIBLE);
+        if(ids.length < count) {
+            int capacity = Math.max(count, 2 * ids.length);
+            ids = new int[capacity];
+            neighbors = new int[capacity * NEIGHBORS];
+            degrees = new int[capacity];
+            members = new int[capacity];
+            groupStarts = new int[capacity + 1];
+            groupOf = new int[capacity];
+            visited = new int[capacity];
+            walkPath = new int[capacity];
+            best = new int[capacity];
+        }
+
+        if(grid.hasNeighborMasks()) { //the IDs run below 64, so walk the mask in order
+            count = NeighborTable.toIds(grid.getVisibleMask(), ids);
+        } else {
+            dotCollector.collected = 0;
+            grid.forEachVisible(dotCollector);
+            Arrays.sort(ids, 0, count);
+        }
+
+        for(int dot = 0; dot < count; dot++) {
+            int found = grid.getVisibleNeighbors(ids[dot], neighborIds);
+            for(int i = 0; i < found; i++) {
+                neighbors[dot * NEIGHBORS + i] = Arrays.binarySearch(ids, 0, count, neighborIds[i]);
+            }
+            degrees[dot] = found;
+        }
+    }
+
+    /**
+     * Splits the dots into connected groups by a breadth first search from each dot not yet in one.
+     */
+    private void collectGroups() {
+        Arrays.fill(groupOf, 0, count, -1);
+        groups = 0;
+        int size = 0;
+        for(int dot = 0; dot < count; dot++) {
+            if(groupOf[dot] != -1) {
+                continue;
+            }
+
+            groupStarts[groups] = size;
+            groupOf[dot] = groups;
+            members[size++] = dot;
+            for(int next = groupStarts[groups]; next < size; next++) {
+                int member = members[next];
+                for(int i = 0; i < degrees[member]; i++) {
+                    int neighbor = neighbors[member * NEIGHBORS + i];
+                    if(groupOf[neighbor] == -1) {
+                        groupOf[neighbor] = groups;
+                        members[size++] = neighbor;
+                    }
+                }
+            }
+            groups++;
+        }
+        groupStarts[groups] = size;
+    }
+
+    /**
+     * Searches a group of at most 64 dots exhaustively, starting a chain from each of its dots.
+     */
+    private void searchGroup(int group) {
+        int first = groupStarts[group];
+        int size = groupStarts[group + 1] - first;
+
+        //Number the group's dots by bit, in ascending ID order so the chains found are reproducible
+        Arrays.sort(members, first, first + size);
+        for(int bit = 0; bit < size; bit++) {
+            int dot = members[first + bit];
+            long mask = 0;
+            for(int i = 0; i < degrees[dot]; i++) {
+                mask |= 1L << (Arrays.binarySearch(members, first, first + size, neighbors[dot * NEIGHBORS + i]) - first);
+            }
+            masks[bit] = mask;
+        }
+        Arrays.fill(memoLengths, (byte) NOT_MEMOIZED);
+
+        long all = size == MAX_MASKED_DOTS ? -1L : (1L << size) - 1;
+        for(int bit = 0; bit < size && bestLength < size && !timedOut; bit++) {
+            path[0] = bit;
+            extend(bit, all & ~(1L << bit), 1, first);
+        }
+    }
+
+    /**
+     * Extends the chain in path, which ends at the given dot, as far as it will go.
+     *
+     * The bounds returned and remembered stay valid as the best chain improves, since parts of the
+     * search are only skipped when they can't beat it. They are exact where nothing was skipped.
+     *
+     * @param free the dots of the group not in the chain
+     * @param length the length of the chain
+     * @param first where the group's dots start in members
+     * @return at least as many dots as the chain can be extended by, or -1 if time ran out
+     */
+    private int extend(int end, long free, int length, int first) {
+        if(length > bestLength) {
+            bestLength = length;
+            for(int i = 0; i < length; i++) {
+                best[i] = ids[members[first + path[i]]];
+            }
+        }
+        if(++steps % TIME_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            timedOut = true;
+        }
+        if(timedOut) {
+            return -1;
+        }
+
+        //Only the dots reachable from the end can be added, so the rest don't matter
+        long reachable = reach(end, free);
+        int bound = bound(end, reachable);
+        if(length + bound <= bestLength) {
+            return bound;
+        }
+        int slot = memoSlot(end, reachable);
+        if(memoLengths[slot] != NOT_MEMOIZED && memoEnds[slot] == end && memoKeys[slot] == reachable) {
+            bound = memoLengths[slot];
+            if(length + bound <= bestLength) {
+                return bound; //already known not to beat the best chain
+            }
+        }
+
+        //Try the neighbours with the fewest ways on first, which finds long chains sooner
+        long[] next = candidates[length - 1];
+        int choices = 0;
+        for(long options = masks[end] & reachable; options != 0; options &= options - 1) {
+            int dot = Long.numberOfTrailingZeros(options);
+            long option = (long) Long.bitCount(masks[dot] & reachable) << 32 | dot;
+            int i = choices++;
+            while(i > 0 && next[i - 1] > option) {
+                next[i] = next[i - 1];
+                i--;
+            }
+            next[i] = option;
+        }
+
+        int longest = 0;
+        for(int i = 0; i < choices; i++) {
+            int dot = (int) next[i];
+            path[length] = dot;
+            int extension = extend(dot, reachable & ~(1L << dot), length + 1, first);
+            if(extension < 0) {
+                return -1;
+            }
+            longest = Math.max(longest, extension + 1);
+        }
+
+        memoKeys[slot] = reachable;
+        memoEnds[slot] = (byte) end;
+        memoLengths[slot] = (byte) longest;
+        return longest;
+    }
+
+    /**
+     * @return the dots in free which can be reached from the given dot through dots in free
+     */
+    private long reach(int from, long free) {
+        long reached = 0;
+        long frontier = masks[from] & free;
+        while(frontier != 0) {
+            reached |= frontier;
+            long grown = 0;
+            for(long dots = frontier; dots != 0; dots &= dots - 1) {
+                grown |= masks[Long.numberOfTrailingZeros(dots)];
+            }
+            frontier = grown & free & ~reached;
+        }
+        return reached;
+    }
+
+    /**
+     * @return how many of the reachable dots a chain ending at the given dot could go on to take.
+     *         A dot with only one neighbour among them and the end is a dead end which the chain
+     *         has to finish at, so it can take at most one of those.
+     */
+    private int bound(int end, long reachable) {
+        long open = reachable | 1L << end;
+        int deadEnds = 0;
+        for(long dots = reachable; dots != 0; dots &= dots - 1) {
+            if(Long.bitCount(masks[Long.numberOfTrailingZeros(dots)] & open) == 1) {
+                deadEnds++;
+            }
+        }
+        return Long.bitCount(reachable) - Math.max(0, deadEnds - 1);
+    }
+
+    private static int memoSlot(int end, long reachable) {
+        long hash = (reachable ^ end) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> (64 - MEMO_SHIFT));
+    }
+
+    /**
+     * Walks a group too large to search exhaustively greedily from each of its dots.
+     */
+    private void walkGroup(int group) {
+        int first = groupStarts[group];
+        int last = groupStarts[group + 1];
+        for(int start = first; start < last && !timedOut; start++) {
+            walk++;
+            int dot = members[start];
+            int length = 0;
+            while(dot != -1) {
+                visited[dot] = walk;
+                walkPath[length++] = dot;
+
+                //Warnsdorff's rule: step to the free neighbour with the fewest free neighbours
+                int nextDot = -1;
+                int fewest = Integer.MAX_VALUE;
+                for(int i = 0; i < degrees[dot]; i++) {
+                    int neighbor = neighbors[dot * NEIGHBORS + i];
+                    if(visited[neighbor] == walk) {
+                        continue;
+                    }
+                    int onward = 0;
+                    for(int j = 0; j < degrees[neighbor]; j++) {
+                        if(visited[neighbors[neighbor * NEIGHBORS + j]] != walk) {
+                            onward++;
+                        }
+                    }
+                    if(onward < fewest) {
+                        fewest = onward;
+                        nextDot = neighbor;
+                    }
+                }
+                dot = nextDot;
+            }
+
+            if(length > bestLength) {
+                bestLength = length;
+                for(int i = 0; i < length; i++) {
+                    best[i] = ids[walkPath[i]];
+                }
+            }
+            if(System.nanoTime() - deadline > 0) {
+                timedOut = true;
+            }
+        }
+    }
+
+    private class DotCollector implements DotGrid.DotVisitor {
+        int collected;
+
+        @Override
+        public void visit(int id) {
+            ids[collected++] = id;
+        }
+    }
+}
@@ -1,29 +1,16 @@
 package ca.brocku.dotscanvas.app.gameboard;
 
+/**
+ * A view of one dot in a DotGrid. The dot's data lives in the grid's arrays; this object only
+ * remembers which dot it refers to, so reading or changing it reads or changes the grid.
+ */
 public class Dot {
+    private final DotGrid grid;
     private final int ID;
 
-    private int row;
-    private int col;
-
-    private float centerX;
-    private float centerY;
-
-    private DotState state;
-    private long stateStartTime;
-
-
-    public Dot(int id, int row, int col) {
+    Dot(DotGrid grid, int id) {
+        this.grid = grid;
         this.ID = id;
-
-        this.row = row;
-        this.col = col;
-
-        this.centerX = 0;
-        this.centerY = 0;
-
-        this.state = DotState.INVISIBLE;
-        this.stateStartTime = System.currentTimeMillis();
     }
 
     public int getID() {
@@ -31,31 +18,23 @@ public class Dot {
     }
 
     public int getRow() {
-        return row;
+        return grid.getRow(ID);
     }
 
     public int getCol() {
-        return col;
+        return grid.getCol(ID);
     }
 
     public float getCenterX() {
-        return centerX;
-    }
-
-    public void setCenterX(float centerX) {
-        this.centerX = centerX;
+        return grid.getCenterX(ID);
     }
 
     public float getCenterY() {
-        return centerY;
-    }
-
-    public void setCenterY(float centerY) {
-        this.centerY = centerY;
+        return grid.getCenterY(ID);
     }
 
     public DotState getState() {
-        return state;
+        return grid.getState(ID);
     }
 
     /**
@@ -64,21 +43,18 @@ public class Dot {
      * @param state the new state of the Dot
      */
     public void setState(DotState state) {
-        if(this.state != state) {
-            this.state = state;
-            this.stateStartTime = System.currentTimeMillis();
-        }
+        grid.setState(ID, state);
     }
 
     public long getStateStartTime() {
-        return stateStartTime;
+        return grid.getStateStartTime(ID);
     }
 
     public long getStateDuration() {
-        return System.currentTimeMillis() - stateStartTime;
+        return grid.getStateDuration(ID);
     }
 
     public boolean isVisible() {
-        return state == DotState.VISIBLE;
+        return grid.isVisible(ID);
     }
 }
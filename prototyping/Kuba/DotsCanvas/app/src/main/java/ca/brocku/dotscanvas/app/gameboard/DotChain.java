@@ -0,0 +1,189 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import java.util.Arrays;
+
+/**
+ * The ordered chain of dots the player is swiping through, stored as dot IDs. Membership is kept
+ * in a bitset over the grid so that contains(), push() and peek() are all constant time. The
+ * bitset is split into pages which are only allocated once a dot in them is chained, and the
+ * chain's arrays grow with it, so a chain on a large board costs what its length does.
+ *
+ * The chain also keeps the lines it is drawn with in a flat vertex array which can be handed
+ * straight to Canvas.drawLines(): four floats (startX, startY, endX, endY) per dot, for the line
+ * from it to the next dot in the chain, or from the last dot to the line end, which follows the
+ * finger. Pushing or popping a dot and moving the line end each patch only the vertices that
+ * change.
+ */
+public class DotChain {
+    private final DotGrid grid;
+
+    private static final int PAGE_SHIFT = 12; //dot IDs per page of the membership bitset
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] ids; //the chain in order
+    private final long[][] members; //bit per dot ID, by page
+    private float[] lines; //4 per dot in the chain
+    private float lineEndX;
+    private float lineEndY;
+    private int size;
+
+    public DotChain(DotGrid grid) {
+        this.grid = grid;
+
+        int capacity = Math.min(grid.size(), INITIAL_CAPACITY);
+        this.ids = new int[capacity];
+        this.members = new long[(grid.size() + (1 << PAGE_SHIFT) - 1) >>> PAGE_SHIFT][];
+        this.lines = new float[4 * capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a dot to the end of the chain. A dot can only be in the chain once.
+     *
+     * @param id the ID of the dot to add
+     */
+    public void push(int id) {
+        if(contains(id)) {
+            throw new IllegalArgumentException("Dot " + id + " is already in the chain");
+        }
+        if(size == ids.length) {
+            ids = Arrays.copyOf(ids, 2*size);
+            lines = Arrays.copyOf(lines, 8*size);
+        }
+
+        long[] page = members[id >>> PAGE_SHIFT];
+        if(page == null) {
+            page = new long[1 << (PAGE_SHIFT - 6)];
+            members[id >>> PAGE_SHIFT] = page;
+        }
+        page[(id >>> 6) & (page.length - 1)] |= 1L << id;
+        float x = grid.getCenterX(id);
+        float y = grid.getCenterY(id);
+        if(size > 0) { //the previous last dot's line now ends at this dot
+            lines[4*size - 2] = x;
+            lines[4*size - 1] = y;
+        }
+        lines[4*size] = x;
+        lines[4*size + 1] = y;
+        lines[4*size + 2] = lineEndX;
+        lines[4*size + 3] = lineEndY;
+        ids[size++] = id;
+    }
+
+    /**
+     * Removes the last dot from the chain, e.g. when the player backtracks over it.
+     *
+     * @return the ID of the removed dot
+     */
+    public int pop() {
+        if(size == 0) {
+            throw new IllegalStateException("The chain is empty");
+        }
+        int id = ids[--size];
+        removeMember(id);
+        if(size > 0) { //the new last dot's line goes to the line end again
+            lines[4*size - 2] = lineEndX;
+            lines[4*size - 1] = lineEndY;
+        }
+        return id;
+    }
+
+    /**
+     * @return the ID of the last dot in the chain
+     */
+    public int peek() {
+        if(size == 0) {
+            throw new IllegalStateException("The chain is empty");
+        }
+        return ids[size - 1];
+    }
+
+    /**
+     * @param index the position in the chain, from 0 (the first dot) to size()-1
+     * @return the ID of the dot at that position
+     */
+    public int get(int index) {
+        return ids[index];
+    }
+
+    public boolean contains(int id) {
+        long[] page = members[id >>> PAGE_SHIFT];
+        return page != null && (page[(id >>> 6) & (page.length - 1)] & (1L << id)) != 0;
+    }
+
+    private void removeMember(int id) {
+        long[] page = members[id >>> PAGE_SHIFT];
+        page[(id >>> 6) & (page.length - 1)] &= ~(1L << id);
+    }
+
+    /**
+     * Whether moving onto a dot means the player is backtracking: the dot is the one chained
+     * just before the last.
+     *
+     * @param id the ID of the dot being moved onto
+     */
+    public boolean isBacktrack(int id) {
+        return size >= 2 && ids[size - 2] == id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for(int i = 0; i < size; i++) {
+            removeMember(ids[i]);
+        }
+        size = 0;
+    }
+
+    /**
+     * Moves the end of the line drawn from the last dot, e.g. to where the finger is.
+     */
+    public void setLineEnd(float x, float y) {
+        lineEndX = x;
+        lineEndY = y;
+        if(size > 0) {
+            lines[4*size - 2] = x;
+            lines[4*size - 1] = y;
+        }
+    }
+
+    /**
+     * The lines between the chained dots in order, followed by the line from the last dot to the
+     * line end, as four floats per line. Only the first getLineVertexCount() values are
+     * meaningful. The array is owned by the chain and must not be modified, and is replaced when
+     * the chain outgrows it.
+     */
+    public float[] getLineVertices() {
+        return lines;
+    }
+
+    /**
+     * @return the number of floats of getLineVertices() in use, as drawLines() counts them
+     */
+    public int getLineVertexCount() {
+        return 4*size;
+    }
+
+    /**
+     * Re-reads the centers of the chained dots, for after the grid's geometry changes.
+     */
+    public void refreshCoordinates() {
+        for(int i = 0; i < size; i++) {
+            float x = grid.getCenterX(ids[i]);
+            float y = grid.getCenterY(ids[i]);
+            lines[4*i] = x;
+            lines[4*i + 1] = y;
+            if(i > 0) {
+                lines[4*i - 2] = x;
+                lines[4*i - 1] = y;
+            }
+        }
+        setLineEnd(lineEndX, lineEndY);
+    }
+}
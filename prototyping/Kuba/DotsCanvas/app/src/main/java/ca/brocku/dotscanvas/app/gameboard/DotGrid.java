@@ -1,36 +1,631 @@
 package ca.brocku.dotscanvas.app.gameboard;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
+ * A square grid of dots stored as parallel primitive arrays, so that per-frame passes over the
+ * grid walk flat arrays instead of chasing Dot references. A dot's ID is row*gridLength + col.
+ *
+ * The arrays are split into square chunks of CHUNK_LENGTH x CHUNK_LENGTH dots which are only
+ * allocated when one of their dots first changes state; until then every dot in a chunk is
+ * INVISIBLE and has been since the grid was created. Centers are computed from the row and column
+ * rather than stored. On a large board where only the part on screen is played, memory therefore
+ * grows with the area that has been played rather than with the board. A grid that fits in one
+ * chunk, like the default board, stores its dots by ID in that chunk, so its accessors index
+ * straight into the arrays without working out a row and column.
+ *
+ * The dots in each state other than INVISIBLE are also kept in an index which is updated as states
+ * change, so that passes over e.g. the VISIBLE or animating dots visit only those dots; see
+ * forEachVisible() and forEachAnimating(). Most of a board is INVISIBLE at any time.
+ *
+ * Each dot's eight neighbours are worked out up front; see NeighborTable. On grids of at most 64
+ * dots the VISIBLE dots are also kept as a 64-bit mask, so that e.g. the VISIBLE neighbours of a dot
+ * are found with a single AND; see getVisibleNeighborMask().
+ *
+ * Hot loops should use the visitors or the ID based accessors (getState(int), getCenterX(int),
+ * ...) directly. Dot objects are views onto these arrays for code that prefers an object per dot.
+ *
  * @author Jakub Subczynski
  * @date June 04, 2014
  */
 public class DotGrid implements Iterable<Dot> {
+    private static final DotState[] STATES = DotState.values();
+    private static final byte INVISIBLE = (byte) DotState.INVISIBLE.ordinal();
+
+    //Chunks are CHUNK_LENGTH dots on a side
+    public static final int CHUNK_SHIFT = 4;
+    public static final int CHUNK_LENGTH = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_LENGTH - 1;
+
     private final int GRID_LENGTH;
     private final int NUMBER_OF_DOTS;
+    private final int CHUNKS_PER_SIDE;
+
+    //Per-dot data by chunk, then by position within the chunk; null until a dot in it changes
+    private final byte[][] states; //DotState ordinals
+    private final long[][] stateStartTimes;
+    private int allocatedChunks;
+    private long initialStateStartTime; //when the dots in unallocated chunks became INVISIBLE
+
+    private final Dot[][] views; //created on demand by getDot()
+
+    private final DotIndex[] indexes; //the dots in each state, by ordinal; null for INVISIBLE
+
+    private final NeighborTable neighbors;
+    private long visibleMask; //bit i set when dot i is VISIBLE; only on grids with neighbour masks
+
+    private final FrameClock clock; //timestamps every state change
 
-    private Dot[][] grid;
+    //Geometry of the grid on the surface; see setGeometry()
+    private float pixelsPerDotRegion;
+    private float dotRadius;
 
-    public DotGrid(int gridLength) {
+    /**
+     * @param gridLength the number of dots along each side of the grid
+     * @param clock the clock state changes are timed against
+     */
+    public DotGrid(int gridLength, FrameClock clock) {
+        this.clock = clock;
         this.GRID_LENGTH = gridLength;
         this.NUMBER_OF_DOTS = GRID_LENGTH*GRID_LENGTH;
+        this.CHUNKS_PER_SIDE = (GRID_LENGTH + CHUNK_MASK) >> CHUNK_SHIFT;
+
+        int chunks = CHUNKS_PER_SIDE*CHUNKS_PER_SIDE;
+        this.states = new byte[chunks][];
+        this.stateStartTimes = new long[chunks][];
+        this.views = new Dot[chunks][];
+        this.initialStateStartTime = clock.now();
+
+        this.indexes = new DotIndex[STATES.length];
+        for(DotState state: STATES) {
+            if(state != DotState.INVISIBLE) {
+                indexes[state.ordinal()] = new DotIndex(NUMBER_OF_DOTS);
+            }
+        }
+
+        this.neighbors = new NeighborTable(GRID_LENGTH);
+
+        this.pixelsPerDotRegion = 1;
+        this.dotRadius = 1;
+    }
+
+    /**
+     * Makes every dot INVISIBLE as of the given time and frees all chunks.
+     */
+    void reset(long stateStartTime) {
+        for(int chunk = 0; chunk < states.length; chunk++) {
+            states[chunk] = null;
+            stateStartTimes[chunk] = null;
+        }
+        allocatedChunks = 0;
+        initialStateStartTime = stateStartTime;
+        for(DotIndex index: indexes) {
+            if(index != null) {
+                index.clear();
+            }
+        }
+        visibleMask = 0;
+    }
+
+    /**
+     * @return the chunk holding the dot with the given ID
+     */
+    public int getChunk(int id) {
+        if(CHUNKS_PER_SIDE == 1) {
+            return 0;
+        }
+        int row = id / GRID_LENGTH;
+        int col = id - row*GRID_LENGTH;
+        return (row >> CHUNK_SHIFT)*CHUNKS_PER_SIDE + (col >> CHUNK_SHIFT);
+    }
+
+    private int getIndexInChunk(int id) {
+        if(CHUNKS_PER_SIDE == 1) {
+            return id; //at most CHUNK_LENGTH*CHUNK_LENGTH dots
+        }
+        int row = id / GRID_LENGTH;
+        int col = id - row*GRID_LENGTH;
+        return (row & CHUNK_MASK) << CHUNK_SHIFT | (col & CHUNK_MASK);
+    }
+
+    public int getChunkCount() {
+        return states.length;
+    }
+
+    public boolean isChunkAllocated(int chunk) {
+        return states[chunk] != null;
+    }
+
+    /**
+     * @return the number of chunks that have been allocated, out of getChunkCount()
+     */
+    public int getAllocatedChunkCount() {
+        return allocatedChunks;
+    }
+
+    /**
+     * @return the ID of the chunk's first dot; the chunk holds the dots firstId + r*getGridLength()
+     *         + c for r and c below CHUNK_LENGTH, clipped to the grid
+     */
+    public int getChunkFirstId(int chunk) {
+        return (chunk / CHUNKS_PER_SIDE << CHUNK_SHIFT)*GRID_LENGTH + (chunk % CHUNKS_PER_SIDE << CHUNK_SHIFT);
+    }
+
+    private void allocateChunk(int chunk) {
+        byte[] chunkStates = new byte[CHUNK_LENGTH*CHUNK_LENGTH];
+        long[] chunkStartTimes = new long[CHUNK_LENGTH*CHUNK_LENGTH];
+        Arrays.fill(chunkStates, INVISIBLE);
+        Arrays.fill(chunkStartTimes, initialStateStartTime);
+        states[chunk] = chunkStates;
+        stateStartTimes[chunk] = chunkStartTimes;
+        allocatedChunks++;
+    }
+
+    /**
+     * Lays the grid out on the board. Each dot sits in the middle of a square region of
+     * pixelsPerDotRegion pixels; a dot's row runs along the x axis and its column along the y axis.
+     * This is constant time; centers are computed when asked for.
+     *
+     * @param pixelsPerDotRegion the side length of each dot's region
+     * @param dotRadius the radius of a dot
+     */
+    public void setGeometry(float pixelsPerDotRegion, float dotRadius) {
+        this.pixelsPerDotRegion = pixelsPerDotRegion;
+        this.dotRadius = dotRadius;
+    }
+
+    public float getPixelsPerDotRegion() {
+        return pixelsPerDotRegion;
+    }
+
+    /**
+     * Finds the dot under a touch in constant time by mapping the coordinates straight to the
+     * region they fall in. A touch hits a dot when it is within radiusFactor radii of its center
+     * along both axes.
+     *
+     * Only the region containing the touch is checked, which is exact as long as
+     * dotRadius*radiusFactor does not exceed half of a region (true for the factors used by the
+     * game: the radius is a third of a region).
+     *
+     * @param x the x coordinate of the touch
+     * @param y the y coordinate of the touch
+     * @param radiusFactor how many radii from the center still count as a hit
+     * @return the ID of the dot that was hit, or -1 if the touch is not on a dot
+     */
+    public int getDotIdAt(float x, float y, float radiusFactor) {
+        if(x < 0 || y < 0) {
+            return -1;
+        }
+
+        int row = (int) (x / pixelsPerDotRegion);
+        int col = (int) (y / pixelsPerDotRegion);
+        if(row >= GRID_LENGTH || col >= GRID_LENGTH) {
+            return -1;
+        }
+
+        int id = row*GRID_LENGTH + col;
+        float reach = dotRadius * radiusFactor;
+        if(Math.abs(x - getCenterX(id)) <= reach && Math.abs(y - getCenterY(id)) <= reach) {
+            return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds every dot a straight swipe from (x0, y0) to (x1, y1) passes over, in the order they
+     * are crossed. Only the regions the segment runs through are visited, and in each the segment
+     * is tested against the dot's hit square (radiusFactor radii from its center along both axes,
+     * as in getDotIdAt()).
+     *
+     * @param radiusFactor how many radii from the center still count as a hit
+     * @param ids receives the IDs of the dots hit; the search stops once it is full
+     * @return the number of IDs written to ids
+     */
+    public int getDotIdsAlong(float x0, float y0, float x1, float y1, float radiusFactor, int[] ids) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+
+        int row = (int) Math.floor(x0 / pixelsPerDotRegion);
+        int col = (int) Math.floor(y0 / pixelsPerDotRegion);
+        int endRow = (int) Math.floor(x1 / pixelsPerDotRegion);
+        int endCol = (int) Math.floor(y1 / pixelsPerDotRegion);
+        int steps = Math.abs(endRow - row) + Math.abs(endCol - col);
+
+        //Walk the regions the segment crosses (Amanatides & Woo). tMax is how far along the
+        //segment the next region boundary on each axis is; tDelta is the distance between them.
+        int rowStep = dx > 0 ? 1 : -1;
+        int colStep = dy > 0 ? 1 : -1;
+        float tMaxX = dx == 0 ? Float.POSITIVE_INFINITY
+                : ((rowStep > 0 ? row + 1 : row) * pixelsPerDotRegion - x0) / dx;
+        float tMaxY = dy == 0 ? Float.POSITIVE_INFINITY
+                : ((colStep > 0 ? col + 1 : col) * pixelsPerDotRegion - y0) / dy;
+        float tDeltaX = dx == 0 ? Float.POSITIVE_INFINITY : pixelsPerDotRegion / Math.abs(dx);
+        float tDeltaY = dy == 0 ? Float.POSITIVE_INFINITY : pixelsPerDotRegion / Math.abs(dy);
+
+        float reach = dotRadius * radiusFactor;
+        int count = 0;
+        for(int step = 0; ; step++) {
+            if(row >= 0 && row < GRID_LENGTH && col >= 0 && col < GRID_LENGTH) {
+                int id = row*GRID_LENGTH + col;
+                if(segmentHitsSquare(x0, y0, dx, dy, getCenterX(id), getCenterY(id), reach)) {
+                    if(count == ids.length) {
+                        break;
+                    }
+                    ids[count++] = id;
+                }
+            }
+
+            if(step >= steps) {
+                break;
+            }
+            if(tMaxX < tMaxY) {
+                row += rowStep;
+                tMaxX += tDeltaX;
+            } else {
+                col += colStep;
+                tMaxY += tDeltaY;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Slab test of the segment (x0, y0) + t*(dx, dy), 0 <= t <= 1, against the square of half
+     * side reach around (cx, cy).
+     */
+    private static boolean segmentHitsSquare(float x0, float y0, float dx, float dy,
+                                             float cx, float cy, float reach) {
+        float tEnter = 0;
+        float tExit = 1;
+
+        if(dx == 0) {
+            if(Math.abs(x0 - cx) > reach) {
+                return false;
+            }
+        } else {
+            float t1 = (cx - reach - x0) / dx;
+            float t2 = (cx + reach - x0) / dx;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+
+        if(dy == 0) {
+            if(Math.abs(y0 - cy) > reach) {
+                return false;
+            }
+        } else {
+            float t1 = (cy - reach - y0) / dy;
+            float t2 = (cy + reach - y0) / dy;
+            tEnter = Math.max(tEnter, Math.min(t1, t2));
+            tExit = Math.min(tExit, Math.max(t1, t2));
+        }
+
+        return tEnter <= tExit;
+    }
+
+    /**
+     * @see #getDotIdAt(float, float, float)
+     *
+     * @return the dot that was hit, or null if the touch is not on a dot
+     */
+    public Dot getDotAt(float x, float y, float radiusFactor) {
+        int id = getDotIdAt(x, y, radiusFactor);
+        return id < 0 ? null : getDot(id);
+    }
+
+    /**
+     * @return the number of dots in this grid
+     */
+    public int size() {
+        return NUMBER_OF_DOTS;
+    }
+
+    public FrameClock getClock() {
+        return clock;
+    }
+
+    public int getGridLength() {
+        return GRID_LENGTH;
+    }
+
+    /**
+     * Gets the view of a dot. Unlike iterator(), this does not allocate once the view exists.
+     *
+     * @param id the dot's ID, from 0 to size()-1
+     * @return the dot with that ID
+     */
+    public Dot getDot(int id) {
+        int chunk = getChunk(id);
+        Dot[] chunkViews = views[chunk];
+        if(chunkViews == null) {
+            chunkViews = new Dot[CHUNK_LENGTH*CHUNK_LENGTH];
+            views[chunk] = chunkViews;
+        }
+
+        int index = getIndexInChunk(id);
+        Dot dot = chunkViews[index];
+        if(dot == null) {
+            dot = new Dot(this, id);
+            chunkViews[index] = dot;
+        }
+        return dot;
+    }
+
+    public int getRow(int id) {
+        return id / GRID_LENGTH;
+    }
+
+    public int getCol(int id) {
+        return id % GRID_LENGTH;
+    }
+
+    public float getCenterX(int id) {
+        return getRow(id) * pixelsPerDotRegion + pixelsPerDotRegion / 2.0f;
+    }
+
+    public float getCenterY(int id) {
+        return getCol(id) * pixelsPerDotRegion + pixelsPerDotRegion / 2.0f;
+    }
+
+    public DotState getState(int id) {
+        byte[] chunkStates = states[getChunk(id)];
+        return chunkStates == null ? DotState.INVISIBLE : STATES[chunkStates[getIndexInChunk(id)]];
+    }
+
+    public boolean isVisible(int id) {
+        byte[] chunkStates = states[getChunk(id)];
+        return chunkStates != null && chunkStates[getIndexInChunk(id)] == DotState.VISIBLE.ordinal();
+    }
+
+    /**
+     * Sets a dot's state. Also resets its state start time if the state is changing.
+     *
+     * @param id the dot's ID
+     * @param state the new state of the dot
+     */
+    public void setState(int id, DotState state) {
+        byte code = (byte) state.ordinal();
+        int chunk = getChunk(id);
+        if(states[chunk] == null) {
+            if(code == INVISIBLE) {
+                return;
+            }
+            allocateChunk(chunk);
+        }
+
+        int index = getIndexInChunk(id);
+        byte previous = states[chunk][index];
+        if(previous != code) {
+            states[chunk][index] = code;
+            stateStartTimes[chunk][index] = clock.now();
+            reindex(id, previous, code);
+        }
+    }
+
+    /**
+     * Sets a dot's state and when it entered it, leaving the dot in the index of its previous
+     * state until reindex() is called. This is for the bands of GameEngine's banded update, which
+     * change different dots at the same time while the indexes are shared. The dot's chunk must
+     * be allocated, as it is for any dot that has a transition pending.
+     */
+    void setStateUnindexed(int id, DotState state, long stateStartTime) {
+        int chunk = getChunk(id);
+        int index = getIndexInChunk(id);
+        states[chunk][index] = (byte) state.ordinal();
+        stateStartTimes[chunk][index] = stateStartTime;
+    }
 
-        this.grid = new Dot[GRID_LENGTH][GRID_LENGTH];
-        initializeGrid();
+    /**
+     * Moves a dot from the index of its previous state to that of its new one, after
+     * setStateUnindexed().
+     */
+    void reindex(int id, DotState previous, DotState state) {
+        reindex(id, (byte) previous.ordinal(), (byte) state.ordinal());
     }
 
-    private void initializeGrid() {
-        int id = 1;
-        for(int col=0; col<GRID_LENGTH; col++) {
-            for(int row=0; row<GRID_LENGTH; row++) {
-                grid[row][col] = new Dot(id++, row, col);
+    /**
+     * Moves a dot from the index of its previous state to that of its new one.
+     */
+    private void reindex(int id, byte previous, byte code) {
+        if(previous != INVISIBLE) {
+            indexes[previous].remove(id);
+        }
+        if(code != INVISIBLE) {
+            indexes[code].add(id);
+        }
+        if(neighbors.hasMasks()) {
+            if(code == DotState.VISIBLE.ordinal()) {
+                visibleMask |= 1L << id;
+            } else {
+                visibleMask &= ~(1L << id);
             }
         }
     }
 
     /**
-     * Creates and returns a new iterator for this dot grid.
+     * Puts a dot back into a saved state, including when it entered that state.
+     */
+    void restoreState(int id, DotState state, long stateStartTime) {
+        int chunk = getChunk(id);
+        if(states[chunk] == null) {
+            allocateChunk(chunk);
+        }
+        int index = getIndexInChunk(id);
+        byte code = (byte) state.ordinal();
+        reindex(id, states[chunk][index], code);
+        states[chunk][index] = code;
+        stateStartTimes[chunk][index] = stateStartTime;
+    }
+
+    public long getStateStartTime(int id) {
+        long[] chunkStartTimes = stateStartTimes[getChunk(id)];
+        return chunkStartTimes == null ? initialStateStartTime : chunkStartTimes[getIndexInChunk(id)];
+    }
+
+    /**
+     * @return when the dots that have never changed state became INVISIBLE
+     */
+    public long getInitialStateStartTime() {
+        return initialStateStartTime;
+    }
+
+    /**
+     * @return how long the dot has been in its current state, as of the clock's current time
+     */
+    public long getStateDuration(int id) {
+        return clock.now() - getStateStartTime(id);
+    }
+
+    /**
+     * @return whether the two dots are next to each other, including diagonally
+     */
+    public boolean isAdjacent(int id, int other) {
+        return neighbors.isAdjacent(id, other);
+    }
+
+    /**
+     * Lists a dot's neighbours in ascending ID order.
+     *
+     * @param ids receives the IDs; must have room for 8
+     * @return the number of IDs written to ids
+     */
+    public int getNeighbors(int id, int[] ids) {
+        return neighbors.getNeighbors(id, ids);
+    }
+
+    /**
+     * Lists a dot's VISIBLE neighbours in ascending ID order.
+     *
+     * @param ids receives the IDs; must have room for 8
+     * @return the number of IDs written to ids
+     */
+    public int getVisibleNeighbors(int id, int[] ids) {
+        if(neighbors.hasMasks()) {
+            return NeighborTable.toIds(neighbors.getMask(id) & visibleMask, ids);
+        }
+
+        int count = neighbors.getNeighbors(id, ids);
+        int visible = 0;
+        for(int i = 0; i < count; i++) {
+            if(isVisible(ids[i])) {
+                ids[visible++] = ids[i];
+            }
+        }
+        return visible;
+    }
+
+    /**
+     * @return whether the grid is small enough for the mask methods, i.e. has at most 64 dots
+     */
+    public boolean hasNeighborMasks() {
+        return neighbors.hasMasks();
+    }
+
+    /**
+     * @return the dot's neighbours as a mask with bit i set for the dot with ID i
+     * @throws IllegalStateException if the grid has more than 64 dots
+     */
+    public long getNeighborMask(int id) {
+        checkNeighborMasks();
+        return neighbors.getMask(id);
+    }
+
+    /**
+     * @return the VISIBLE dots as a mask with bit i set for the dot with ID i
+     * @throws IllegalStateException if the grid has more than 64 dots
+     */
+    public long getVisibleMask() {
+        checkNeighborMasks();
+        return visibleMask;
+    }
+
+    /**
+     * @return the dot's VISIBLE neighbours as a mask with bit i set for the dot with ID i
+     * @throws IllegalStateException if the grid has more than 64 dots
+     */
+    public long getVisibleNeighborMask(int id) {
+        checkNeighborMasks();
+        return neighbors.getMask(id) & visibleMask;
+    }
+
+    private void checkNeighborMasks() {
+        if(!neighbors.hasMasks()) {
+            throw new IllegalStateException("A grid of " + NUMBER_OF_DOTS + " dots has no neighbour masks");
+        }
+    }
+
+    /**
+     * Receives dot IDs from the forEach methods. Implementations are meant to be created once and
+     * reused, so that a pass over the dots does not allocate.
+     */
+    public interface DotVisitor {
+        void visit(int id);
+    }
+
+    /**
+     * @return how many dots are in the given state
+     */
+    public int getCount(DotState state) {
+        DotIndex index = indexes[state.ordinal()];
+        return index == null ? NUMBER_OF_DOTS - getNonInvisibleCount() : index.size();
+    }
+
+    private int getNonInvisibleCount() {
+        int count = 0;
+        for(DotIndex index: indexes) {
+            if(index != null) {
+                count += index.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Visits every dot in the given state, in no particular order. The visitor may change the state
+     * of the dot it is visiting, but not of any other dot.
+     *
+     * @param state any state but INVISIBLE, which is not indexed
+     */
+    public void forEach(DotState state, DotVisitor visitor) {
+        DotIndex index = indexes[state.ordinal()];
+        if(index == null) {
+            throw new IllegalArgumentException("The " + state + " dots are not indexed");
+        }
+        visit(index, index.size(), visitor);
+    }
+
+    public void forEachVisible(DotVisitor visitor) {
+        forEach(DotState.VISIBLE, visitor);
+    }
+
+    /**
+     * Visits every APPEARING and DISAPPEARING dot once. As with forEach(), the visitor may change
+     * the state of the dot it is visiting; a dot it moves from one animating state to the other is
+     * not visited again.
+     */
+    public void forEachAnimating(DotVisitor visitor) {
+        DotIndex disappearing = indexes[DotState.DISAPPEARING.ordinal()];
+        int disappearingCount = disappearing.size(); //any more are dots visited as APPEARING
+        forEach(DotState.APPEARING, visitor);
+        visit(disappearing, disappearingCount, visitor);
+    }
+
+    /**
+     * Visits the first count dots of an index. Dots added while visiting go after them and are not
+     * visited.
+     */
+    private static void visit(DotIndex index, int count, DotVisitor visitor) {
+        //Backwards, so that removing the visited dot only moves an already visited one, or one
+        //added since the visit started, into its place
+        for(int i = count - 1; i >= 0; i--) {
+            visitor.visit(index.get(i));
+        }
+    }
+
+    /**
+     * Creates and returns a new iterator for this dot grid. It visits every dot, INVISIBLE or not;
+     * prefer the forEach methods in hot loops.
      *
      * @return a new iterator for this dot grid
      */
@@ -56,12 +651,7 @@ public class DotGrid implements Iterable<Dot> {
 
         @Override
         public Dot next() {
-            int row = counter/GRID_LENGTH; //number of whole rows traversed
-            int col = counter%GRID_LENGTH; //number of columns traversed in the current row
-
-            counter++;
-
-            return grid[row][col];
+            return getDot(counter++);
         }
 
         @Override
@@ -0,0 +1,77 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * An unordered set of dot IDs with constant time add, remove and contains, which can be walked
+ * without visiting the dots that are not in it. DotGrid keeps one per DotState, apart from
+ * INVISIBLE, so that passes over e.g. the animating dots only cost as much as there are of them.
+ *
+ * Removing a dot moves the last member into its place, so the order changes as dots come and go.
+ * Each dot's position is kept in PagedPositions, so memory grows with the dots that have been
+ * added rather than with the board.
+ */
+class DotIndex {
+    private static final int NOT_INDEXED = PagedPositions.NONE;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] ids;
+    private final PagedPositions positions; //each dot's index in ids
+    private int size;
+
+    /**
+     * @param numberOfDots the number of dots that can be added; IDs run from 0 to this - 1
+     */
+    DotIndex(int numberOfDots) {
+        this.ids = new int[Math.min(numberOfDots, INITIAL_CAPACITY)];
+        this.positions = new PagedPositions(numberOfDots);
+        this.size = 0;
+    }
+
+    void add(int id) {
+        if(positions.get(id) != NOT_INDEXED) {
+            return;
+        }
+        if(size == ids.length) {
+            int[] newIds = new int[Math.max(INITIAL_CAPACITY, 2*ids.length)];
+            System.arraycopy(ids, 0, newIds, 0, size);
+            ids = newIds;
+        }
+        ids[size] = id;
+        positions.set(id, size++);
+    }
+
+    void remove(int id) {
+        int position = positions.get(id);
+        if(position == NOT_INDEXED) {
+            return;
+        }
+        positions.set(id, NOT_INDEXED);
+        size--;
+        if(position != size) {
+            int last = ids[size];
+            ids[position] = last;
+            positions.set(last, position);
+        }
+    }
+
+    boolean contains(int id) {
+        return positions.get(id) != NOT_INDEXED;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index from 0 to size() - 1
+     */
+    int get(int index) {
+        return ids[index];
+    }
+
+    void clear() {
+        for(int i = 0; i < size; i++) {
+            positions.set(ids[i], NOT_INDEXED);
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,73 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * The game's notion of "now". The time only changes when the clock is told to, either by sampling
+ * its TimeSource with tick() or by stepping it with advance(), so everything that reads it between
+ * two updates (every state change in a tick, every dot drawn in a frame) sees the same value.
+ *
+ * Time is monotonic: the default source is System.nanoTime(), which is not affected by changes to
+ * the wall clock. A different source, or advance() alone, lets the game run faster than real time.
+ */
+public class FrameClock {
+    public static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Supplies monotonic nanosecond timestamps.
+     */
+    public interface TimeSource {
+        long nanoTime();
+    }
+
+    public static final TimeSource SYSTEM_TIME = new TimeSource() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private final TimeSource source;
+    private long frameNanos;
+
+    public FrameClock() {
+        this(SYSTEM_TIME);
+    }
+
+    public FrameClock(TimeSource source) {
+        this.source = source;
+        this.frameNanos = source.nanoTime();
+    }
+
+    /**
+     * Samples the time source. Call once per tick.
+     *
+     * @return the new current time in nanoseconds
+     */
+    public long tick() {
+        frameNanos = source.nanoTime();
+        return frameNanos;
+    }
+
+    /**
+     * Steps the clock forward without consulting the time source, e.g. by one fixed simulation
+     * tick.
+     *
+     * @param nanos how far to move the clock forward
+     */
+    public void advance(long nanos) {
+        frameNanos += nanos;
+    }
+
+    /**
+     * @return the current time in nanoseconds
+     */
+    public long nanoTime() {
+        return frameNanos;
+    }
+
+    /**
+     * @return the current time in milliseconds
+     */
+    public long now() {
+        return frameNanos / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,847 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The rules of the game, independent of Android: dots appearing and expiring, chaining dots by
+ * swiping over adjacent ones, scoring cleared chains and ending the game after too many misses.
+ *
+ * The engine is deterministic. Time only passes when step() is called, and every random decision
+ * comes from a generator seeded at construction, so the same seed and the same inputs at the same
+ * steps always play out the same game. Nothing here needs a device, which lets games be simulated
+ * on a plain JVM much faster than real time.
+ *
+ * The engine is not thread-safe; callers serialize access to it.
+ */
+public class GameEngine {
+    public static final int DEFAULT_GRID_LENGTH = 6;
+
+    //Boards longer than this are played through a viewport: dots only spawn in the play area and
+    //spawns probe it at random instead of indexing every eligible dot; see setPlayArea()
+    public static final int MAX_SMALL_GRID_LENGTH = 32;
+    private static final int SPAWN_ATTEMPTS = 16;
+    public static final int DOTS_TO_MISS = 15;
+
+    public static final long DURATION_ANIMATION = 100;
+    public static final long DURATION_VISIBLE = 2000;
+
+    //An invisible dot stays hidden for at least DURATION_INVISIBLE, after which it can be picked
+    //to appear; see SpawnScheduler
+    public static final long DURATION_INVISIBLE = 2000;
+
+    //The default difficulty curve, in spawns per second for each dot on the board: 1.8 spawns a
+    //second on a 6x6 board at first, climbing to 4.5 a second after two and a half minutes
+    public static final double SPAWN_RATE_PER_DOT = 0.05;
+    public static final double SPAWN_RATE_INCREASE_PER_DOT = 0.0005;
+    public static final double MAX_SPAWN_RATE_PER_DOT = 0.125;
+
+    //How close to a dot a touch must be, in dot radii, to start a chain or to extend one
+    private static final float TOUCH_DOWN_RADIUS_FACTOR = 1.4f;
+    private static final float TOUCH_MOVE_RADIUS_FACTOR = 1;
+
+    private static final long MAX_PREDICTION_MILLIS = 50;
+
+    //The fewest transitions due in one tick that are worth splitting into bands; see
+    //setUpdateExecutor()
+    public static final int PARALLEL_UPDATE_THRESHOLD = 2048;
+
+    //Saved in place of the time until a dot's next transition when it has none pending
+    private static final int NOT_SCHEDULED = Integer.MIN_VALUE;
+    private static final int STATE_HEADER_BYTES = 52; //see writeState()
+    private static final int DOT_STATE_BYTES = 13;
+
+    /**
+     * Receives the engine's events as they happen, on whichever thread is stepping the engine.
+     */
+    public interface Listener {
+        /**
+         * A dot has changed state.
+         *
+         * @param id the dot's ID
+         * @param previousState the state the dot was in before
+         */
+        void onDotStateChanged(int id, DotState previousState);
+
+        /**
+         * The score or the number of missed dots has changed.
+         */
+        void onCountersChanged(int score, int missedDots);
+
+        /**
+         * The player has missed as many dots as the game allows.
+         */
+        void onGameOver();
+    }
+
+    private final FrameClock clock;
+    private final long seed;
+    private final GameRandom random;
+    private final DotGrid grid;
+    private final TransitionScheduler scheduler; //when each dot next changes state
+    private final SpawnScheduler spawner; //when invisible dots appear, and which
+    private final boolean largeBoard; //see MAX_SMALL_GRID_LENGTH
+
+    //Where dots spawn, in rows and columns (inclusive); the whole board unless set
+    private int playFirstRow;
+    private int playFirstCol;
+    private int playLastRow;
+    private int playLastCol;
+
+    //The difficulty curve, in spawns per second for each dot in the play area
+    private double spawnRatePerDot = SPAWN_RATE_PER_DOT;
+    private double spawnRateIncreasePerDot = SPAWN_RATE_INCREASE_PER_DOT;
+    private double maxSpawnRatePerDot = MAX_SPAWN_RATE_PER_DOT;
+    private final DotChain chain;
+    private Listener listener;
+    private ReplayRecorder recorder; //records the inputs, if set
+    private TransitionBatch transitionBatch; //gathers each tick's transitions, if updating in bands
+    private long updatedNanos = Long.MIN_VALUE; //the clock's time at the last update()
+
+    //Layout of the board; see setBoardSize()
+    private float pixelsPerDotRegion = 1;
+    private float dotRadius = 1;
+    private float maxLineLength = 1;
+
+    private boolean interacting; //interaction = actions from touch down to touch up
+    private float chainingLineX;
+    private float chainingLineY;
+    private float lastTouchX; //previous touch sample, for finding the dots swiped over
+    private float lastTouchY;
+    private final int[] sweptDotIds; //dots crossed by one touch move
+    private final TouchPredictor touchPredictor; //extrapolates the chaining line to display time
+
+    private int score;
+    private int missedDots;
+    private int dotsToMiss; //the game ends once this many dots have been missed
+    private boolean gameOver;
+
+    /**
+     * @param gridLength the number of dots along each side of the board
+     * @param seed seeds every random decision the engine makes
+     * @param clock the engine's time; step() advances it
+     */
+    public GameEngine(int gridLength, long seed, FrameClock clock) {
+        this.clock = clock;
+        this.seed = seed;
+        this.random = new GameRandom(seed);
+        this.grid = new DotGrid(gridLength, clock);
+        this.scheduler = new TransitionScheduler(grid.size());
+        this.spawner = new SpawnScheduler(grid.size(), random);
+        this.largeBoard = gridLength > MAX_SMALL_GRID_LENGTH;
+        this.playLastRow = gridLength - 1;
+        this.playLastCol = gridLength - 1;
+        updateSpawnRate();
+        this.spawner.start(clock.now());
+        this.chain = new DotChain(grid);
+        this.sweptDotIds = new int[2*gridLength];
+        this.touchPredictor = new TouchPredictor(MAX_PREDICTION_MILLIS);
+        this.dotsToMiss = DOTS_TO_MISS;
+
+        if(!largeBoard) { //on a large board, eligibility is checked when a spawn probes a dot
+            for(int id = 0; id < grid.size(); id++) {
+                scheduleTransition(id);
+            }
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Records every input from now on so that the game can be replayed; see ReplayRecorder.
+     *
+     * @param recorder the recorder, or null to stop recording
+     */
+    public void setRecorder(ReplayRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Changes the difficulty curve, in spawns per second for each dot in the play area; see
+     * SpawnScheduler.
+     */
+    public void setSpawnRate(double initialRatePerDot, double rateIncreasePerDot, double maxRatePerDot) {
+        spawnRatePerDot = initialRatePerDot;
+        spawnRateIncreasePerDot = rateIncreasePerDot;
+        maxSpawnRatePerDot = maxRatePerDot;
+        updateSpawnRate();
+    }
+
+    /**
+     * Limits where dots spawn to a block of rows and columns, e.g. the part of a large board that
+     * is on screen, and scales the spawn rate to its size. Dots outside it carry on as they were.
+     * The area is clamped to the board.
+     */
+    public void setPlayArea(int firstRow, int firstCol, int lastRow, int lastCol) {
+        int last = grid.getGridLength() - 1;
+        firstRow = Math.max(0, Math.min(firstRow, last));
+        firstCol = Math.max(0, Math.min(firstCol, last));
+        lastRow = Math.max(firstRow, Math.min(lastRow, last));
+        lastCol = Math.max(firstCol, Math.min(lastCol, last));
+        if(firstRow == playFirstRow && firstCol == playFirstCol && lastRow == playLastRow && lastCol == playLastCol) {
+            return;
+        }
+        if(recorder != null) {
+            recorder.recordPlayArea(firstRow, firstCol, lastRow, lastCol);
+        }
+
+        playFirstRow = firstRow;
+        playFirstCol = firstCol;
+        playLastRow = lastRow;
+        playLastCol = lastCol;
+        updateSpawnRate();
+    }
+
+    private void updateSpawnRate() {
+        int dots = (playLastRow - playFirstRow + 1) * (playLastCol - playFirstCol + 1);
+        spawner.setRate(spawnRatePerDot * dots, spawnRateIncreasePerDot * dots, maxSpawnRatePerDot * dots);
+    }
+
+    /**
+     * @return whether update() has already run at the clock's current time, i.e. whether an input
+     *         now comes after this tick's transitions rather than before them
+     */
+    boolean isTickUpdated() {
+        return updatedNanos == clock.nanoTime();
+    }
+
+    /**
+     * Lets update() apply the transitions due in a tick in bands of rows on the executor. Only
+     * ticks with at least PARALLEL_UPDATE_THRESHOLD transitions due are split, and the game plays
+     * out exactly as it does without an executor. Meant for large boards; a small board never has
+     * that many dots.
+     *
+     * @param executor runs the bands, or null to update on the calling thread alone; the engine
+     *                 does not shut it down
+     * @param bands how many bands of rows to split the board into
+     */
+    public void setUpdateExecutor(ExecutorService executor, int bands) {
+        transitionBatch = executor == null ? null
+                : new TransitionBatch(grid, executor, bands, PARALLEL_UPDATE_THRESHOLD);
+    }
+
+    public boolean isLargeBoard() {
+        return largeBoard;
+    }
+
+    /**
+     * Changes how many dots can be missed before the game ends. Defaults to DOTS_TO_MISS;
+     * Integer.MAX_VALUE makes the game endless, e.g. for benchmarks and simulations.
+     */
+    public void setDotsToMiss(int dotsToMiss) {
+        this.dotsToMiss = dotsToMiss;
+    }
+
+    public int getDotsToMiss() {
+        return dotsToMiss;
+    }
+
+    /**
+     * Lays the board out in a square of the given side length.
+     *
+     * @param length the side length of the board, in pixels
+     */
+    public void setBoardSize(float length) {
+        if(recorder != null) {
+            recorder.recordBoardSize(length);
+        }
+
+        pixelsPerDotRegion = length/grid.getGridLength();
+        dotRadius = pixelsPerDotRegion*2.0f/3.0f /2;
+        maxLineLength = (float) (1.5*pixelsPerDotRegion);
+
+        grid.setGeometry(pixelsPerDotRegion, dotRadius);
+        chain.refreshCoordinates();
+    }
+
+    /**
+     * Advances the game: moves the clock forward, handles the queued touch events and then
+     * applies the state transitions that have come due.
+     *
+     * @param dtNanos how far to move the clock forward
+     * @param inputs touch events to handle this step; may be null
+     */
+    public void step(long dtNanos, TouchEventQueue inputs) {
+        clock.advance(dtNanos);
+        if(inputs != null) {
+            handleInputs(inputs);
+        }
+        update();
+    }
+
+    /**
+     * Handles every event in the queue.
+     */
+    public void handleInputs(TouchEventQueue inputs) {
+        while(inputs.poll()) {
+            onTouch(inputs.getAction(), inputs.getX(), inputs.getY(), inputs.getTime());
+        }
+    }
+
+    /**
+     * Handles one touch event.
+     *
+     * @param action one of the TouchEventQueue.ACTION_* constants
+     * @param time when the touch was sampled, in milliseconds; only used to predict the chaining
+     *             line
+     */
+    public void onTouch(int action, float x, float y, long time) {
+        if(recorder != null) {
+            recorder.recordTouch(action, x, y, time);
+        }
+        if(gameOver) {
+            return;
+        }
+
+        switch (action) {
+            case TouchEventQueue.ACTION_DOWN:
+                onTouchDown(x, y, time);
+                break;
+            case TouchEventQueue.ACTION_UP:
+                onTouchUp();
+                break;
+            case TouchEventQueue.ACTION_MOVE:
+                onTouchMove(x, y, time);
+                break;
+            case TouchEventQueue.ACTION_OUTSIDE:
+                onTouchOutside();
+                break;
+        }
+    }
+
+    /**
+     * Applies the state transitions that have come due, then shows the dots whose spawns have come
+     * due. Every transition is scheduled when the dot enters its current state, so only the dots
+     * that actually change are visited.
+     */
+    public void update() {
+        updatedNanos = clock.nanoTime();
+        long now = clock.now();
+        int id;
+        if(transitionBatch != null) {
+            applyTransitionBatch(now);
+        }
+        while(!gameOver && (id = scheduler.pollDue(now)) != -1) {
+            switch (grid.getState(id)) {
+                case VISIBLE:
+                    setDotState(id, DotState.DISAPPEARING);
+                    updateMissedByOne();
+                    break;
+                case DISAPPEARING:
+                    setDotState(id, DotState.INVISIBLE);
+                    break;
+                case INVISIBLE: //hidden long enough to be picked by a spawn
+                    spawner.addEligible(id);
+                    break;
+                case APPEARING:
+                    setDotState(id, DotState.VISIBLE);
+                    break;
+            }
+        }
+
+        if(largeBoard) {
+            while(!gameOver && spawner.pollDue(now)) {
+                id = probePlayArea(now);
+                if(id != -1) {
+                    setDotState(id, DotState.APPEARING);
+                }
+            }
+        } else {
+            while(!gameOver && (id = spawner.pollSpawn(now)) != -1) {
+                setDotState(id, DotState.APPEARING);
+            }
+        }
+    }
+
+    /**
+     * Applies the transitions that have come due all at once. They are drained from the scheduler
+     * in the order they came due and moved to their next states in the grid, in bands if there
+     * are enough of them. The rest of each transition is then done here in that same order, which
+     * is the order the loop in update() goes in: the state indexes, the next transition, the
+     * spawner and the listener.
+     *
+     * The misses are counted once for the tick unless they end the game. Then they are counted one
+     * by one so that the game ends on the same transition, and the dots after it are put back.
+     */
+    private void applyTransitionBatch(long now) {
+        TransitionBatch batch = transitionBatch;
+        while(!gameOver && scheduler.peekDeadline() <= now) {
+            long deadline = scheduler.peekDeadline();
+            batch.add(scheduler.pollDue(now), deadline);
+        }
+        if(batch.size() == 0) {
+            return;
+        }
+
+        int misses = batch.apply(now);
+        boolean mayEndGame = missedDots + misses >= dotsToMiss;
+        for(int i = 0; i < batch.size(); i++) {
+            int id = batch.getId(i);
+            DotState previousState = batch.getPreviousState(i);
+            if(gameOver) {
+                batch.undo(i);
+                scheduler.schedule(id, batch.getDeadline(i));
+            } else if(previousState == DotState.INVISIBLE) {
+                spawner.addEligible(id);
+            } else {
+                grid.reindex(id, previousState, batch.getNextState(i));
+                scheduleTransition(id);
+                if(listener != null) {
+                    listener.onDotStateChanged(id, previousState);
+                }
+                if(mayEndGame && previousState == DotState.VISIBLE) {
+                    updateMissedByOne();
+                }
+            }
+        }
+        batch.clear();
+
+        if(!mayEndGame && misses > 0) {
+            missedDots += misses;
+            if(listener != null) {
+                listener.onCountersChanged(score, missedDots);
+            }
+        }
+    }
+
+    /**
+     * Picks a dot for a spawn on a large board by probing random dots in the play area for one
+     * that has been invisible long enough. The play area is mostly such dots, so few probes are
+     * needed; a spawn that finds none is dropped, as it is on a small board.
+     *
+     * @return the ID of the dot to show, or -1 if none was found
+     */
+    private int probePlayArea(long now) {
+        int rows = playLastRow - playFirstRow + 1;
+        int cols = playLastCol - playFirstCol + 1;
+        for(int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+            int row = playFirstRow + random.nextInt(rows);
+            int col = playFirstCol + random.nextInt(cols);
+            int id = row*grid.getGridLength() + col;
+            if(grid.getState(id) == DotState.INVISIBLE && now - grid.getStateStartTime(id) > DURATION_INVISIBLE) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Extends the chaining line to where the finger is predicted to be at the given time, e.g.
+     * when the next frame will be shown.
+     *
+     * @param time the time to predict for, on the same time base as the touch events
+     */
+    public void predictChainingLine(long time) {
+        if(interacting && touchPredictor.predict(time)) {
+            setInteractingCoordinates(touchPredictor.getPredictedX(), touchPredictor.getPredictedY());
+        }
+    }
+
+    private void onTouchDown(float x, float y, long time) {
+        chainingLineX = x;
+        chainingLineY = y;
+        chain.setLineEnd(x, y);
+        lastTouchX = x;
+        lastTouchY = y;
+        touchPredictor.reset();
+        touchPredictor.addSample(x, y, time);
+
+        int id = grid.getDotIdAt(x, y, TOUCH_DOWN_RADIUS_FACTOR);
+        if(id != -1 && grid.isVisible(id)) {
+            chain.push(id);
+            //TODO animate dot
+        }
+
+        interacting = true;
+    }
+
+    private void onTouchUp() {
+        updateScore();
+
+        //Hide all of the dots in the dot chain
+        for(int i = 0; i < chain.size(); i++) {
+            setDotState(chain.get(i), DotState.DISAPPEARING);
+        }
+        chain.clear();
+
+        interacting = false;
+    }
+
+    /**
+     * Handles one touch sample of a swipe. Every dot on the straight path from the previous sample
+     * is considered, in the order the finger crossed them.
+     */
+    private void onTouchMove(float x, float y, long time) {
+        setInteractingCoordinates(x, y);
+        touchPredictor.addSample(x, y, time);
+
+        if(!chain.isEmpty()) {
+            int crossed = grid.getDotIdsAlong(lastTouchX, lastTouchY, x, y, TOUCH_MOVE_RADIUS_FACTOR, sweptDotIds);
+            for(int i = 0; i < crossed; i++) {
+                int id = sweptDotIds[i];
+                if(grid.isVisible(id)) {
+                    if(chain.isBacktrack(id)) { //un-select the last dot
+                        chain.pop();
+                    } else if(!chain.contains(id) && isDotAdjacent(id)) {
+                        chain.push(id);
+                        //TODO animate dot
+
+                    }
+                }
+            }
+        }
+
+        lastTouchX = x;
+        lastTouchY = y;
+    }
+
+    private void onTouchOutside() {
+        chain.clear();
+        interacting = false;
+    }
+
+    private void setInteractingCoordinates(float endX, float endY) {
+        if(!chain.isEmpty()) {
+            int lastDot = chain.peek();
+            float startX = grid.getCenterX(lastDot);
+            float startY = grid.getCenterY(lastDot);
+
+            //Lengths from the start to the end coordinates
+            float diffX = Math.abs(startX- endX);
+            float diffY = Math.abs(startY- endY);
+
+            if(diffX > maxLineLength || diffY > maxLineLength) { //if a length exceeds the max allowed
+
+                //The factor represents how much larger the larger distance of the two is than the max length allowed
+                float factor = (diffX >= diffY ? diffX/maxLineLength : diffY/maxLineLength);
+
+                //Trim each axis' distance by the factor
+                diffX /= factor;
+                diffY /= factor;
+
+                //Adjust ending coordinates
+                if(startX- endX > 0) {
+                    chainingLineX = startX-diffX;
+                } else if(startX- endX < 0) {
+                    chainingLineX = startX+diffX;
+                }
+                if(startY- endY > 0) {
+                    chainingLineY = startY-diffY;
+                } else if(startY- endY < 0) {
+                    chainingLineY = startY+diffY;
+                }
+
+            } else { //line length within limit, set values
+                chainingLineX = endX;
+                chainingLineY = endY;
+            }
+            chain.setLineEnd(chainingLineX, chainingLineY);
+        }
+    }
+
+    private boolean isDotAdjacent(int id) {
+        //Check if dot is adjacent to the last selected dot
+        return !chain.isEmpty() && grid.isAdjacent(chain.peek(), id);
+    }
+
+    private void updateScore() {
+        if(!chain.isEmpty()) {
+            score += chain.size() * chain.size();
+            if(listener != null) {
+                listener.onCountersChanged(score, missedDots);
+            }
+        }
+    }
+
+    private void updateMissedByOne() {
+        missedDots++;
+        if(listener != null) {
+            listener.onCountersChanged(score, missedDots);
+        }
+
+        if(missedDots >= dotsToMiss) {
+            gameOver = true;
+            if(listener != null) {
+                listener.onGameOver();
+            }
+        }
+    }
+
+    /**
+     * Changes a dot's state and schedules the transition out of the new state, replacing whatever
+     * was pending for the dot. The game changes states itself; this is for setting up a board,
+     * e.g. in a benchmark, and keeps the grid's indexes and the schedules in step where changing
+     * the grid directly would not.
+     */
+    public void setDotState(int id, DotState state) {
+        DotState previousState = grid.getState(id);
+        grid.setState(id, state);
+        spawner.removeEligible(id);
+        scheduleTransition(id);
+
+        if(listener != null) {
+            listener.onDotStateChanged(id, previousState);
+        }
+    }
+
+    /**
+     * Schedules a dot's next transition based on its current state. A state lasts until its
+     * duration has been exceeded, hence the extra millisecond.
+     */
+    private void scheduleTransition(int id) {
+        long start = grid.getStateStartTime(id);
+
+        switch (grid.getState(id)) {
+            case VISIBLE:
+                scheduler.schedule(id, start + DURATION_VISIBLE + 1);
+                break;
+            case DISAPPEARING:
+            case APPEARING:
+                scheduler.schedule(id, start + DURATION_ANIMATION + 1);
+                break;
+            case INVISIBLE: //until the dot can be picked to appear
+                if(largeBoard) {
+                    scheduler.cancel(id);
+                } else {
+                    scheduler.schedule(id, start + DURATION_INVISIBLE + 1);
+                }
+                break;
+        }
+    }
+
+    /**
+     * @return the most bytes writeState() can currently write
+     */
+    int getMaxStateSize() {
+        int dots = grid.getAllocatedChunkCount()*DotGrid.CHUNK_LENGTH*DotGrid.CHUNK_LENGTH + scheduler.size();
+        return STATE_HEADER_BYTES + 4 + dots*DOT_STATE_BYTES + 4 + spawner.getEligibleCount()*4;
+    }
+
+    /**
+     * Writes the state of the game after the GameSnapshot header. Times are saved relative to the
+     * clock, so they survive being restored into an engine whose clock reads differently.
+     *
+     * Only dots that may differ from a new game are written: those in the grid's allocated chunks
+     * and those with a pending transition. Every other dot is INVISIBLE since the initial state
+     * start time and has nothing pending.
+     */
+    void writeState(ByteBuffer out) {
+        long now = clock.now();
+
+        out.putInt(grid.getGridLength());
+        out.putLong(random.getState());
+        out.putInt(score);
+        out.putInt(missedDots);
+        out.putInt(dotsToMiss);
+        out.putInt((int) (now - spawner.getStartTime())); //play time so far
+        out.putInt((int) (spawner.getNextSpawnTime() - now));
+        out.putInt((int) (now - grid.getInitialStateStartTime()));
+        out.putInt(playFirstRow);
+        out.putInt(playFirstCol);
+        out.putInt(playLastRow);
+        out.putInt(playLastCol);
+
+        int countPosition = out.position();
+        out.putInt(0);
+        int count = 0;
+        int gridLength = grid.getGridLength();
+        for(int chunk = 0; chunk < grid.getChunkCount(); chunk++) {
+            if(grid.isChunkAllocated(chunk)) {
+                int firstId = grid.getChunkFirstId(chunk);
+                int rows = Math.min(DotGrid.CHUNK_LENGTH, gridLength - grid.getRow(firstId));
+                int cols = Math.min(DotGrid.CHUNK_LENGTH, gridLength - grid.getCol(firstId));
+                for(int r = 0; r < rows; r++) {
+                    for(int c = 0; c < cols; c++) {
+                        writeDotState(out, firstId + r*gridLength + c, now);
+                        count++;
+                    }
+                }
+            }
+        }
+        for(int i = 0; i < scheduler.size(); i++) {
+            int id = scheduler.get(i);
+            if(!grid.isChunkAllocated(grid.getChunk(id))) {
+                writeDotState(out, id, now);
+                count++;
+            }
+        }
+        out.putInt(countPosition, count);
+
+        out.putInt(spawner.getEligibleCount());
+        for(int i = 0; i < spawner.getEligibleCount(); i++) {
+            out.putInt(spawner.getEligible(i));
+        }
+    }
+
+    private void writeDotState(ByteBuffer out, int id, long now) {
+        out.putInt(id);
+        out.put((byte) grid.getState(id).ordinal());
+        out.putInt((int) (now - grid.getStateStartTime(id))); //time in the state so far
+        out.putInt(scheduler.isScheduled(id) ? (int) (scheduler.getDeadline(id) - now) //time until the next transition
+                : NOT_SCHEDULED);
+    }
+
+    /**
+     * Reads a state written by writeState(). The engine is left untouched if the state is for a
+     * different board or is malformed.
+     *
+     * @return whether the state was restored
+     */
+    boolean readState(ByteBuffer in) {
+        int start = in.position();
+        int dotCount = grid.size();
+
+        //Validate everything before changing anything
+        if(in.remaining() < STATE_HEADER_BYTES + 4 || in.getInt(start) != grid.getGridLength()) {
+            return false;
+        }
+        int dotsStart = start + STATE_HEADER_BYTES;
+        int savedDots = in.getInt(dotsStart);
+        if(savedDots < 0 || (in.limit() - dotsStart - 4) / DOT_STATE_BYTES < savedDots) {
+            return false;
+        }
+        for(int i = 0; i < savedDots; i++) {
+            int entry = dotsStart + 4 + i*DOT_STATE_BYTES;
+            int id = in.getInt(entry);
+            int state = in.get(entry + 4);
+            if(id < 0 || id >= dotCount || state < 0 || state >= DotState.values().length) {
+                return false;
+            }
+        }
+        int eligibleStart = dotsStart + 4 + savedDots*DOT_STATE_BYTES;
+        if(!isIdList(in, eligibleStart, dotCount)) {
+            return false;
+        }
+        int eligibleCount = in.getInt(eligibleStart);
+
+        long now = clock.now();
+
+        in.getInt(); //grid length
+        random.setState(in.getLong());
+        score = in.getInt();
+        missedDots = in.getInt();
+        dotsToMiss = in.getInt();
+        gameOver = missedDots >= dotsToMiss;
+        long playTime = in.getInt();
+        long untilNextSpawn = in.getInt();
+        long initialStateAge = in.getInt();
+        int firstRow = in.getInt();
+        int firstCol = in.getInt();
+        int lastRow = in.getInt();
+        int lastCol = in.getInt();
+
+        grid.reset(now - initialStateAge);
+        scheduler.clear();
+        spawner.restore(now - playTime, now + untilNextSpawn);
+        setPlayArea(firstRow, firstCol, lastRow, lastCol);
+
+        in.getInt(); //number of dots
+        for(int i = 0; i < savedDots; i++) {
+            int id = in.getInt();
+            DotState state = DotState.values()[in.get()];
+            long elapsed = in.getInt();
+            int remaining = in.getInt();
+            grid.restoreState(id, state, now - elapsed);
+            if(remaining != NOT_SCHEDULED) {
+                scheduler.schedule(id, now + remaining);
+            }
+        }
+
+        //The chain is not saved: the touch that built it did not survive, so neither does the
+        //chain, and its dots stay VISIBLE
+        chain.clear();
+
+        in.getInt(); //eligible count
+        for(int i = 0; i < eligibleCount; i++) {
+            spawner.addEligible(in.getInt());
+        }
+
+        interacting = false;
+        touchPredictor.reset();
+
+        if(listener != null) {
+            listener.onCountersChanged(score, missedDots);
+        }
+        return true;
+    }
+
+    /**
+     * @return whether a count followed by that many dot IDs is at the position
+     */
+    private static boolean isIdList(ByteBuffer in, int position, int dotCount) {
+        if(in.limit() - position < 4) {
+            return false;
+        }
+        int count = in.getInt(position);
+        if(count < 0 || count > dotCount || (in.limit() - position - 4) / 4 < count) {
+            return false;
+        }
+        for(int i = 0; i < count; i++) {
+            int id = in.getInt(position + 4 + i*4);
+            if(id < 0 || id >= dotCount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the seed every random decision in this game derives from
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public FrameClock getClock() {
+        return clock;
+    }
+
+    public DotGrid getDotGrid() {
+        return grid;
+    }
+
+    public DotChain getDotChain() {
+        return chain;
+    }
+
+    public TouchPredictor getTouchPredictor() {
+        return touchPredictor;
+    }
+
+    public float getPixelsPerDotRegion() {
+        return pixelsPerDotRegion;
+    }
+
+    public float getDotRadius() {
+        return dotRadius;
+    }
+
+    /**
+     * @return whether a touch is in progress; the chain is only drawn while it is
+     */
+    public boolean isInteracting() {
+        return interacting;
+    }
+
+    public float getChainingLineX() {
+        return chainingLineX;
+    }
+
+    public float getChainingLineY() {
+        return chainingLineY;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getMissedDots() {
+        return missedDots;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+}
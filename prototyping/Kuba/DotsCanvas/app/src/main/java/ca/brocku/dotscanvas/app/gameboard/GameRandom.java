@@ -0,0 +1,55 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * A small, seedable random number generator (SplitMix64) whose entire state is one long, so a game
+ * can be replayed from its seed and its generator saved and restored exactly. java.util.Random
+ * does not expose its state, and Math.random() is shared by the whole process.
+ */
+public class GameRandom {
+    private long state;
+
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    public long nextLong() {
+        long z = (state += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return a uniformly distributed value from 0 (inclusive) to 1 (exclusive)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * @param bound the upper bound (exclusive); must be positive
+     * @return a uniformly distributed value from 0 (inclusive) to bound (exclusive)
+     */
+    public int nextInt(int bound) {
+        if(bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        return (int) (((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * @param mean the mean of the distribution
+     * @return an exponentially distributed value
+     */
+    public double nextExponential(double mean) {
+        return -Math.log(1 - nextDouble()) * mean;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+}
@@ -0,0 +1,96 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A compact binary snapshot of a game: the state of every dot with how long it has been in it and
+ * how long until it changes, the score, the missed count and the random generator, so that a
+ * restored game carries on exactly where it left off. A chain being swiped is not saved: the
+ * touch that built it ends with the pause, so the chain goes too and its dots stay VISIBLE.
+ *
+ * Layout (big-endian):
+ *  int   MAGIC
+ *  int   VERSION
+ *  int   grid length
+ *  long  random generator state
+ *  int   score, missed dots, dots to miss
+ *  int   milliseconds played, milliseconds until the next spawn
+ *  int   milliseconds since the dots that never changed state became INVISIBLE
+ *  int   play area: first row, first column, last row, last column
+ *  int   number of dots saved, followed for each dot by:
+ *        int ID, byte state, int milliseconds in the state, int milliseconds until the next
+ *        transition (Integer.MIN_VALUE if none is pending)
+ *        Dots that are not saved are INVISIBLE as of the initial state time with nothing pending,
+ *        so the snapshot of a large board grows with the part that has been played.
+ *  int   number of dots eligible to spawn, followed by their IDs in the spawner's order
+ *
+ * The snapshot reuses one buffer, so encoding does not allocate once the buffer is big enough.
+ * A snapshot with an unknown magic number or version is rejected rather than misread; bump VERSION
+ * whenever the layout changes.
+ */
+public class GameSnapshot {
+    public static final int MAGIC = 0x444F5453; //"DOTS"
+    public static final int VERSION = 3;
+
+    private static final int HEADER_BYTES = 8;
+
+    private ByteBuffer buffer;
+
+    public GameSnapshot() {
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Encodes the engine's current state into this snapshot's buffer.
+     *
+     * @return the buffer, positioned at the start of the snapshot and limited to its end; it is
+     *         owned by this snapshot and overwritten by the next call
+     */
+    public ByteBuffer encode(GameEngine engine) {
+        int maxSize = HEADER_BYTES + engine.getMaxStateSize();
+        if(buffer.capacity() < maxSize) {
+            buffer = ByteBuffer.allocate(maxSize);
+        }
+
+        buffer.clear();
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        engine.writeState(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Fingerprints the engine's current state: a 64-bit FNV-1a hash of its encoding. Two engines
+     * on the same clock have the same fingerprint exactly when they would save the same snapshot,
+     * which makes it a cheap way to check that two runs of a game ended up in the same state.
+     * Encodes into this snapshot's buffer.
+     */
+    public long fingerprint(GameEngine engine) {
+        ByteBuffer encoded = encode(engine);
+        long hash = 0xCBF29CE484222325L;
+        for(int i = encoded.position(); i < encoded.limit(); i++) {
+            hash ^= encoded.get(i) & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Restores a snapshot into an engine with the same grid length. The engine is left untouched
+     * if the snapshot is from another version or another board, or is malformed.
+     *
+     * @param in the snapshot, from its position to its limit
+     * @return whether the engine was restored
+     */
+    public static boolean decode(ByteBuffer in, GameEngine engine) {
+        if(in.remaining() < HEADER_BYTES
+                || in.getInt(in.position()) != MAGIC
+                || in.getInt(in.position() + 4) != VERSION) {
+            return false;
+        }
+
+        in.position(in.position() + HEADER_BYTES);
+        return engine.readState(in);
+    }
+}
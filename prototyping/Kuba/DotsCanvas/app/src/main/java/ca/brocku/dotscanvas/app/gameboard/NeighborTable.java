@@ -0,0 +1,151 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import java.util.Arrays;
+
+/**
+ * The eight neighbours of every dot on a square grid, worked out once so that checking whether two
+ * dots are adjacent or listing a dot's neighbours is a table lookup rather than row and column
+ * arithmetic.
+ *
+ * A grid of at most MAX_MASKED_DOTS dots gets a 64-bit mask of each dot's neighbours, bit i being
+ * the dot with ID i, so sets of dots can be intersected with a single AND. A larger grid, which may
+ * hold millions of dots, can't afford a table entry per dot. Instead it gets the eight ID offsets
+ * of a dot's neighbours and, for each of the nine kinds of position on the grid (a corner, an edge
+ * or the interior), which of the offsets stay on the grid.
+ */
+class NeighborTable {
+    static final int MAX_MASKED_DOTS = 64;
+
+    //The neighbours in ascending ID order, so that lists of them come out sorted
+    private static final int DIRECTIONS = 8;
+    private static final int[] ROW_STEPS = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] COL_STEPS = {-1, 0, 1, -1, 1, -1, 0, 1};
+
+    private final int gridLength;
+
+    private final long[] masks; //each dot's neighbours; null when the grid has too many dots
+
+    private final int[] offsets; //from a dot's ID to its neighbour's, by direction
+    private final byte[] directions; //by ID difference + gridLength + 1; -1 if not a neighbour
+    private final byte[] onGrid; //bit per direction which stays on the grid, by kind of position
+
+    NeighborTable(int gridLength) {
+        this.gridLength = gridLength;
+
+        this.offsets = new int[DIRECTIONS];
+        this.directions = new byte[2*gridLength + 3];
+        Arrays.fill(directions, (byte) -1);
+        for(int d = 0; d < DIRECTIONS; d++) {
+            offsets[d] = ROW_STEPS[d]*gridLength + COL_STEPS[d];
+            if(gridLength > 2) { //every offset is distinct; smaller grids have masks
+                directions[offsets[d] + gridLength + 1] = (byte) d;
+            }
+        }
+
+        this.onGrid = new byte[9];
+        for(int rowKind = 0; rowKind < 3; rowKind++) {
+            for(int colKind = 0; colKind < 3; colKind++) {
+                int bits = 0;
+                for(int d = 0; d < DIRECTIONS; d++) {
+                    if(!(rowKind == 0 && ROW_STEPS[d] < 0 || rowKind == 2 && ROW_STEPS[d] > 0
+                            || colKind == 0 && COL_STEPS[d] < 0 || colKind == 2 && COL_STEPS[d] > 0)) {
+                        bits |= 1 << d;
+                    }
+                }
+                onGrid[rowKind*3 + colKind] = (byte) bits;
+            }
+        }
+
+        int numberOfDots = gridLength*gridLength;
+        if(numberOfDots <= MAX_MASKED_DOTS) {
+            this.masks = new long[numberOfDots];
+            for(int id = 0; id < numberOfDots; id++) {
+                int bits = getDirectionsOnGrid(id);
+                for(int d = 0; d < DIRECTIONS; d++) {
+                    if((bits >> d & 1) != 0) {
+                        masks[id] |= 1L << (id + offsets[d]);
+                    }
+                }
+            }
+        } else {
+            this.masks = null;
+        }
+    }
+
+    boolean hasMasks() {
+        return masks != null;
+    }
+
+    /**
+     * @return the dot's neighbours as a mask of IDs; only for grids with masks
+     */
+    long getMask(int id) {
+        return masks[id];
+    }
+
+    /**
+     * @return whether the two dots are next to each other, including diagonally
+     */
+    boolean isAdjacent(int id, int other) {
+        if(masks != null) {
+            return (masks[id] >>> other & 1) != 0;
+        }
+
+        int difference = other - id + gridLength + 1;
+        if(difference < 0 || difference >= directions.length) {
+            return false;
+        }
+        int direction = directions[difference];
+        return direction >= 0 && (getDirectionsOnGrid(id) >> direction & 1) != 0;
+    }
+
+    /**
+     * Lists the dot's neighbours in ascending ID order.
+     *
+     * @param ids receives the IDs; must have room for 8
+     * @return the number of IDs written to ids
+     */
+    int getNeighbors(int id, int[] ids) {
+        if(masks != null) {
+            return toIds(masks[id], ids);
+        }
+
+        int bits = getDirectionsOnGrid(id);
+        int count = 0;
+        for(int d = 0; d < DIRECTIONS; d++) {
+            if((bits >> d & 1) != 0) {
+                ids[count++] = id + offsets[d];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return a bit for each direction in which the dot has a neighbour, in the order of the
+     *         offsets
+     */
+    private int getDirectionsOnGrid(int id) {
+        if(gridLength == 1) {
+            return 0;
+        }
+        int row = id / gridLength;
+        int col = id - row*gridLength;
+        int rowKind = row == 0 ? 0 : row == gridLength - 1 ? 2 : 1;
+        int colKind = col == 0 ? 0 : col == gridLength - 1 ? 2 : 1;
+        return onGrid[rowKind*3 + colKind];
+    }
+
+    /**
+     * Lists the IDs set in a mask in ascending order.
+     *
+     * @return the number of IDs written to ids
+     */
+    static int toIds(long mask, int[] ids) {
+        int count = 0;
+        while(mask != 0) {
+            ids[count++] = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+        }
+        return count;
+    }
+}
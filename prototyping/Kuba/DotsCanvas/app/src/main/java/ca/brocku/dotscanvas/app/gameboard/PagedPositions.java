@@ -0,0 +1,52 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * Maps dot IDs to positions in some dense array, e.g. a heap or a list of members, for the
+ * collections of dots that only ever hold a small part of a large board.
+ *
+ * The map is split into pages of PAGE_SIZE IDs which are only allocated once an ID in them is
+ * given a position, so its memory grows with the part of the board in use rather than with the
+ * board. An ID without a position maps to NONE.
+ */
+class PagedPositions {
+    static final int NONE = -1;
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int[][] pages;
+
+    /**
+     * @param numberOfDots the number of dots that can be mapped; IDs run from 0 to this - 1
+     */
+    PagedPositions(int numberOfDots) {
+        this.pages = new int[(numberOfDots + PAGE_MASK) >> PAGE_SHIFT][];
+    }
+
+    /**
+     * @return the dot's position, or NONE if it has none
+     */
+    int get(int id) {
+        int[] page = pages[id >> PAGE_SHIFT];
+        return page == null ? NONE : page[id & PAGE_MASK];
+    }
+
+    /**
+     * @param position the dot's new position, or NONE to forget it
+     */
+    void set(int id, int position) {
+        int[] page = pages[id >> PAGE_SHIFT];
+        if(page == null) {
+            if(position == NONE) {
+                return;
+            }
+            page = new int[PAGE_SIZE];
+            for(int i = 0; i < PAGE_SIZE; i++) {
+                page[i] = NONE;
+            }
+            pages[id >> PAGE_SHIFT] = page;
+        }
+        page[id & PAGE_MASK] = position;
+    }
+}
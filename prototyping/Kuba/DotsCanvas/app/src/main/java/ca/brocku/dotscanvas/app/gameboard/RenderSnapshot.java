@@ -0,0 +1,274 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import java.util.Arrays;
+
+/**
+ * Everything needed to draw one frame of the game, copied out of the engine so that it can be
+ * drawn on another thread while the engine carries on: the layout of the screen, the dots on it
+ * that are VISIBLE or animating, the chain and the counters shown in the HUD. Snapshots are meant
+ * to be reused through a TripleBuffer, so capturing one only allocates when the screen holds more
+ * dots than it ever has.
+ *
+ * Only the dots on screen are captured, in ascending ID order, so two snapshots with the same
+ * layout can be compared dot by dot in a single pass. They are gathered from the grid's indexes of
+ * VISIBLE and animating dots rather than by scanning the screen, which on a zoomed out large board
+ * is mostly INVISIBLE dots.
+ */
+public class RenderSnapshot {
+    private static final int INITIAL_CAPACITY = 64;
+
+    //When the snapshot was taken, on the engine's clock and on the wall clock, in nanoseconds
+    private long simulationTime;
+    private long capturedAt;
+
+    //The layout, which changes whenever layout does
+    private int layout;
+    private int screenWidth;
+    private int screenHeight;
+    private float offsetX;
+    private float offsetY;
+    private float scale;
+    private float pixelsPerDotRegion;
+    private float dotRadius;
+    private int gridLength;
+
+    //The rows and columns on screen, while capturing
+    private int firstRow;
+    private int lastRow;
+    private int firstCol;
+    private int lastCol;
+
+    private int[] visibleIds = new int[INITIAL_CAPACITY];
+    private int visibleCount;
+    private int[] animatingIds = new int[INITIAL_CAPACITY];
+    private long[] animatingStartTimes = new long[INITIAL_CAPACITY];
+    private boolean[] animatingAppearing = new boolean[INITIAL_CAPACITY];
+    private int animatingCount;
+
+    private float[] chainVertices = new float[INITIAL_CAPACITY];
+    private int chainVertexCount; //0 when no chain is being drawn
+
+    private int score;
+    private int missesLeft;
+
+    private final DotGrid.DotVisitor visibleCollector = new DotGrid.DotVisitor() {
+        @Override
+        public void visit(int id) {
+            if(isOnScreen(id)) {
+                visibleIds = add(visibleIds, visibleCount++, id);
+            }
+        }
+    };
+    private final DotGrid.DotVisitor animatingCollector = new DotGrid.DotVisitor() {
+        @Override
+        public void visit(int id) {
+            if(isOnScreen(id)) {
+                animatingIds = add(animatingIds, animatingCount++, id);
+            }
+        }
+    };
+
+    /**
+     * Copies the engine's state as seen through the viewport.
+     *
+     * @param layout identifies the layout of the screen; the caller changes it whenever the surface,
+     *               the board or the viewport changes
+     * @param simulationTime the time the snapshot shows, on the engine's clock; may be ahead of the
+     *                       clock by time that hasn't been simulated yet
+     * @param capturedAt System.nanoTime() when it was captured
+     */
+    public void capture(GameEngine engine, Viewport viewport, int layout, long simulationTime, long capturedAt) {
+        DotGrid grid = engine.getDotGrid();
+        this.simulationTime = simulationTime;
+        this.capturedAt = capturedAt;
+
+        this.layout = layout;
+        this.screenWidth = viewport.getScreenWidth();
+        this.screenHeight = viewport.getScreenHeight();
+        this.offsetX = viewport.getOffsetX();
+        this.offsetY = viewport.getOffsetY();
+        this.scale = viewport.getScale();
+        this.pixelsPerDotRegion = engine.getPixelsPerDotRegion();
+        this.dotRadius = engine.getDotRadius();
+        this.gridLength = grid.getGridLength();
+
+        this.firstRow = viewport.getFirstVisibleRow();
+        this.lastRow = viewport.getLastVisibleRow();
+        this.firstCol = viewport.getFirstVisibleCol();
+        this.lastCol = viewport.getLastVisibleCol();
+
+        visibleCount = 0;
+        grid.forEachVisible(visibleCollector);
+        Arrays.sort(visibleIds, 0, visibleCount);
+
+        animatingCount = 0;
+        grid.forEachAnimating(animatingCollector);
+        Arrays.sort(animatingIds, 0, animatingCount);
+        if(animatingStartTimes.length < animatingIds.length) {
+            animatingStartTimes = new long[animatingIds.length];
+            animatingAppearing = new boolean[animatingIds.length];
+        }
+        for(int i = 0; i < animatingCount; i++) {
+            animatingStartTimes[i] = grid.getStateStartTime(animatingIds[i]);
+            animatingAppearing[i] = grid.getState(animatingIds[i]) == DotState.APPEARING;
+        }
+
+        DotChain chain = engine.getDotChain();
+        chainVertexCount = 0;
+        if(engine.isInteracting() && !chain.isEmpty()) {
+            chainVertexCount = chain.getLineVertexCount();
+            if(chainVertices.length < chainVertexCount) {
+                chainVertices = new float[2*chainVertexCount];
+            }
+            System.arraycopy(chain.getLineVertices(), 0, chainVertices, 0, chainVertexCount);
+        }
+
+        score = engine.getScore();
+        missesLeft = engine.getDotsToMiss() - engine.getMissedDots();
+    }
+
+    private boolean isOnScreen(int id) {
+        int row = id / gridLength;
+        int col = id - row*gridLength;
+        return row >= firstRow && row <= lastRow && col >= firstCol && col <= lastCol;
+    }
+
+    /**
+     * Puts an ID at the given index, growing the array if it is full.
+     *
+     * @return the array, or its replacement if it grew
+     */
+    private static int[] add(int[] ids, int index, int id) {
+        if(index == ids.length) {
+            ids = Arrays.copyOf(ids, 2*ids.length);
+        }
+        ids[index] = id;
+        return ids;
+    }
+
+    public long getSimulationTime() {
+        return simulationTime;
+    }
+
+    public long getCapturedAt() {
+        return capturedAt;
+    }
+
+    public int getLayout() {
+        return layout;
+    }
+
+    public int getScreenWidth() {
+        return screenWidth;
+    }
+
+    public int getScreenHeight() {
+        return screenHeight;
+    }
+
+    /**
+     * @return screen pixels per board pixel
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    public float getOffsetX() {
+        return offsetX;
+    }
+
+    public float getOffsetY() {
+        return offsetY;
+    }
+
+    /**
+     * @return the side length of a dot's region, in screen pixels
+     */
+    public float getScreenRegionSize() {
+        return pixelsPerDotRegion * scale;
+    }
+
+    /**
+     * @return the radius of a dot, in screen pixels
+     */
+    public float getScreenDotRadius() {
+        return dotRadius * scale;
+    }
+
+    /**
+     * @return the x coordinate of a dot's center on the screen
+     */
+    public float getScreenX(int id) {
+        return ((id / gridLength) * pixelsPerDotRegion + pixelsPerDotRegion / 2 - offsetX) * scale;
+    }
+
+    /**
+     * @return the y coordinate of a dot's center on the screen
+     */
+    public float getScreenY(int id) {
+        return ((id % gridLength) * pixelsPerDotRegion + pixelsPerDotRegion / 2 - offsetY) * scale;
+    }
+
+    /**
+     * The IDs of the VISIBLE dots on screen, in ascending order. Only the first getVisibleCount()
+     * are meaningful.
+     */
+    public int[] getVisibleIds() {
+        return visibleIds;
+    }
+
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /**
+     * The IDs of the APPEARING and DISAPPEARING dots on screen, in ascending order. Only the first
+     * getAnimatingCount() are meaningful.
+     */
+    public int[] getAnimatingIds() {
+        return animatingIds;
+    }
+
+    public int getAnimatingCount() {
+        return animatingCount;
+    }
+
+    /**
+     * @param index from 0 to getAnimatingCount() - 1
+     * @return when the animating dot started to animate, in milliseconds on the engine's clock
+     */
+    public long getAnimationStartTime(int index) {
+        return animatingStartTimes[index];
+    }
+
+    /**
+     * @param index from 0 to getAnimatingCount() - 1
+     * @return whether the animating dot is APPEARING rather than DISAPPEARING
+     */
+    public boolean isAppearing(int index) {
+        return animatingAppearing[index];
+    }
+
+    /**
+     * The chain's lines in board coordinates, laid out as DotChain.getLineVertices(). Only the
+     * first getChainVertexCount() values are meaningful.
+     */
+    public float[] getChainVertices() {
+        return chainVertices;
+    }
+
+    /**
+     * @return the number of chain vertex floats, or 0 if no chain is drawn
+     */
+    public int getChainVertexCount() {
+        return chainVertexCount;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getMissesLeft() {
+        return missesLeft;
+    }
+}
@@ -0,0 +1,234 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * Plays a log written by ReplayRecorder back through a GameEngine. Every recorded input is handed
+ * to the engine in the same tick it was handled in when recording, before or after that tick's
+ * update() as it was then, and the engine is created with the same seed and starting clock, so the
+ * game plays out exactly as it did. Playback can be stepped tick by tick alongside real time, or
+ * run headless as fast as possible with play().
+ *
+ * Once the end of the log is reached, matches() tells whether the engine finished in the recorded
+ * state: at the same point, with the same score and missed count and with the same GameSnapshot
+ * fingerprint, which covers every dot, the spawner and the random generator. A mismatch
+ * means the rules changed since the recording, or the game took in something the log missed, which
+ * makes the timings of the two runs incomparable.
+ */
+public class ReplayPlayer {
+    private final byte[] log;
+    private int position;
+
+    private final int gridLength;
+    private final long seed;
+    private final long startNanos;
+    private final long nanosPerTick;
+
+    //The record waiting for its half tick (see ReplayRecorder), already read up to its payload
+    private long nextStamp;
+    private int nextType;
+
+    //Previous values the next record is decoded relative to
+    private int lastXBits;
+    private int lastYBits;
+    private long lastTime;
+
+    private boolean ended;
+    private boolean complete; //whether the log ended with RECORD_END rather than being cut short
+    private boolean truncated; //whether the log was cut short in the middle of a record
+    private int expectedScore;
+    private int expectedMissedDots;
+    private long expectedFingerprint;
+
+    /**
+     * @param log a log written by ReplayRecorder; not copied
+     * @throws IllegalArgumentException if the log is not a replay of a supported version
+     */
+    public ReplayPlayer(byte[] log) {
+        this.log = log;
+
+        if(log.length < 5 || readInt() != ReplayRecorder.MAGIC || readByte() != ReplayRecorder.VERSION) {
+            throw new IllegalArgumentException("Not a version " + ReplayRecorder.VERSION + " replay");
+        }
+        gridLength = (int) readVarint();
+        seed = readLong();
+        startNanos = readLong();
+        nanosPerTick = readVarint();
+        if(truncated) {
+            throw new IllegalArgumentException("The replay's header is truncated");
+        }
+
+        readRecordHeader();
+    }
+
+    /**
+     * Creates an engine in the state the recorded game started from, with its own clock.
+     */
+    public GameEngine createEngine() {
+        final long start = startNanos;
+        return new GameEngine(gridLength, seed, new FrameClock(new FrameClock.TimeSource() {
+            @Override
+            public long nanoTime() {
+                return start;
+            }
+        }));
+    }
+
+    /**
+     * Plays a whole replay headless, as fast as possible.
+     *
+     * @return the engine after the last recorded tick
+     */
+    public GameEngine play() {
+        GameEngine engine = createEngine();
+        while(!isEnded()) {
+            step(engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Advances the engine by one tick, like GameEngine.step(), handing it the inputs recorded for
+     * that tick before and after its update.
+     */
+    public void step(GameEngine engine) {
+        deliver(engine); //anything recorded before the first tick
+        engine.getClock().advance(nanosPerTick);
+        deliver(engine);
+        engine.update();
+        deliver(engine);
+    }
+
+    /**
+     * Hands the engine every record due by now: those from earlier ticks, and those from this tick
+     * before or after its update, depending on whether the engine has updated yet. Use in place of
+     * GameEngine.handleInputs() when the caller advances the clock itself, calling it both before
+     * and after update().
+     */
+    public void deliver(GameEngine engine) {
+        long stamp = ReplayRecorder.getStamp(engine, startNanos, nanosPerTick);
+        while(!ended && nextStamp <= stamp) {
+            //Each record is read whole before it is applied, so that one cut short is dropped
+            switch (nextType) {
+                case ReplayRecorder.RECORD_BOARD_SIZE:
+                    float boardSize = Float.intBitsToFloat(readInt());
+                    if(truncated) {
+                        return;
+                    }
+                    engine.setBoardSize(boardSize);
+                    break;
+                case ReplayRecorder.RECORD_PLAY_AREA:
+                    int firstRow = (int) readVarint();
+                    int firstCol = (int) readVarint();
+                    int lastRow = (int) readVarint();
+                    int lastCol = (int) readVarint();
+                    if(truncated) {
+                        return;
+                    }
+                    engine.setPlayArea(firstRow, firstCol, lastRow, lastCol);
+                    break;
+                case ReplayRecorder.RECORD_END:
+                    expectedScore = (int) readVarint();
+                    expectedMissedDots = (int) readVarint();
+                    expectedFingerprint = readLong();
+                    complete = !truncated;
+                    ended = true;
+                    return;
+                default:
+                    int xBits = lastXBits + (int) unZigZag(readVarint());
+                    int yBits = lastYBits + (int) unZigZag(readVarint());
+                    long time = lastTime + unZigZag(readVarint());
+                    if(truncated) {
+                        return;
+                    }
+                    lastXBits = xBits;
+                    lastYBits = yBits;
+                    lastTime = time;
+                    engine.onTouch(nextType, Float.intBitsToFloat(xBits), Float.intBitsToFloat(yBits), time);
+                    break;
+            }
+            readRecordHeader();
+        }
+    }
+
+    /**
+     * @return whether the last recorded tick has been played
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * @return whether the engine finished the replay in the recorded state; call once the tick the
+     *         replay ended in has been played
+     */
+    public boolean matches(GameEngine engine) {
+        return complete
+                && ReplayRecorder.getStamp(engine, startNanos, nanosPerTick) == nextStamp
+                && engine.getScore() == expectedScore
+                && engine.getMissedDots() == expectedMissedDots
+                && new GameSnapshot().fingerprint(engine) == expectedFingerprint;
+    }
+
+    public int getExpectedScore() {
+        return expectedScore;
+    }
+
+    public int getExpectedMissedDots() {
+        return expectedMissedDots;
+    }
+
+    /**
+     * @return the tick the next record is due in, i.e. the length of the replay once it has ended
+     */
+    public long getTick() {
+        return nextStamp >> 1;
+    }
+
+    public long getNanosPerTick() {
+        return nanosPerTick;
+    }
+
+    private void readRecordHeader() {
+        if(position >= log.length) { //cut short, e.g. the app was killed while recording
+            ended = true;
+            return;
+        }
+        long header = readVarint();
+        nextStamp += header >>> ReplayRecorder.RECORD_TYPE_BITS;
+        nextType = (int) (header & ((1 << ReplayRecorder.RECORD_TYPE_BITS) - 1));
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for(int shift = 0; ; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private int readInt() {
+        return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    }
+
+    private long readLong() {
+        return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the next byte of the log, or 0 once it runs out, which ends the replay as truncated
+     */
+    private int readByte() {
+        if(position >= log.length) {
+            truncated = true;
+            ended = true;
+            return 0;
+        }
+        return log[position++] & 0xFF;
+    }
+}
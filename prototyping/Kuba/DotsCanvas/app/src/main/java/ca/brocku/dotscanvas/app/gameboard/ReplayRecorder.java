@@ -0,0 +1,203 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import java.util.Arrays;
+
+/**
+ * Records everything a GameEngine takes in from outside, so that ReplayPlayer can play the same
+ * game back exactly: the seed, the clock it started from, the board size and every touch event
+ * along with when it was handled.
+ *
+ * An input is stamped with its tick and with whether it came before or after that tick's
+ * update(), counted in half ticks: 2*tick before the update and 2*tick + 1 after it. Touches are
+ * handled within a tick, between advancing the clock and updating, but e.g. the play area follows
+ * the viewport, which moves between ticks. Playback hands each input over at the same point, so
+ * neither kind is applied to a different set of transitions than it was when recording.
+ *
+ * The log is compact because consecutive events differ little. Each record starts with a varint
+ * holding the half ticks since the previous record and the record type; touch coordinates are
+ * stored as zig-zag varint differences between the bits of consecutive floats (which keeps them
+ * exact), and event times as differences in milliseconds. A swipe takes a few bytes per sample.
+ *
+ * Layout:
+ *  int    MAGIC
+ *  byte   VERSION
+ *  varint grid length
+ *  long   seed
+ *  long   starting clock time, in nanoseconds
+ *  varint nanoseconds per tick
+ *  records, each a varint (half ticks since the previous record << 3 | type):
+ *   a touch action (TouchEventQueue.ACTION_*) followed by x, y and time differences
+ *   RECORD_BOARD_SIZE followed by the float bits of the new side length
+ *   RECORD_PLAY_AREA followed by its first row, first column, last row and last column as varints
+ *   RECORD_END followed by the final score and missed count as varints and the final state's
+ *    GameSnapshot fingerprint as a long; it is stamped with when the game ended
+ */
+public class ReplayRecorder {
+    public static final int MAGIC = 0x52504C59; //"RPLY"
+    public static final int VERSION = 3;
+
+    static final int RECORD_BOARD_SIZE = 4;
+    static final int RECORD_PLAY_AREA = 5;
+    static final int RECORD_END = 7;
+    static final int RECORD_TYPE_BITS = 3;
+
+    private final GameEngine engine;
+    private final FrameClock clock;
+    private final long startNanos;
+    private final long nanosPerTick;
+
+    private byte[] bytes;
+    private int length;
+
+    //Previous values the next record is encoded relative to
+    private long lastStamp;
+    private int lastXBits;
+    private int lastYBits;
+    private long lastTime;
+    private boolean finished;
+
+    /**
+     * Starts recording a new game. Attach the recorder with GameEngine.setRecorder() before the
+     * engine is first stepped.
+     *
+     * @param engine the game to record
+     * @param nanosPerTick how far the engine's clock is advanced each tick
+     */
+    public ReplayRecorder(GameEngine engine, long nanosPerTick) {
+        this.engine = engine;
+        this.clock = engine.getClock();
+        this.startNanos = clock.nanoTime();
+        this.nanosPerTick = nanosPerTick;
+        this.bytes = new byte[4096];
+
+        writeInt(MAGIC);
+        writeByte(VERSION);
+        writeVarint(engine.getDotGrid().getGridLength());
+        writeLong(engine.getSeed());
+        writeLong(startNanos);
+        writeVarint(nanosPerTick);
+    }
+
+    /**
+     * Records a touch event as the engine handles it.
+     */
+    void recordTouch(int action, float x, float y, long time) {
+        if(finished) {
+            return;
+        }
+        writeRecordHeader(action);
+
+        int xBits = Float.floatToIntBits(x);
+        int yBits = Float.floatToIntBits(y);
+        writeVarint(zigZag(xBits - lastXBits));
+        writeVarint(zigZag(yBits - lastYBits));
+        writeVarint(zigZag(time - lastTime));
+        lastXBits = xBits;
+        lastYBits = yBits;
+        lastTime = time;
+    }
+
+    /**
+     * Records the board being laid out.
+     */
+    void recordBoardSize(float length) {
+        if(finished) {
+            return;
+        }
+        writeRecordHeader(RECORD_BOARD_SIZE);
+        writeInt(Float.floatToIntBits(length));
+    }
+
+    /**
+     * Records the play area changing, e.g. as a large board is panned.
+     */
+    void recordPlayArea(int firstRow, int firstCol, int lastRow, int lastCol) {
+        if(finished) {
+            return;
+        }
+        writeRecordHeader(RECORD_PLAY_AREA);
+        writeVarint(firstRow);
+        writeVarint(firstCol);
+        writeVarint(lastRow);
+        writeVarint(lastCol);
+    }
+
+    /**
+     * Ends the recording with the game's current tick, score, missed count and a fingerprint of
+     * its whole state, which playback checks against. Nothing more is recorded afterwards.
+     */
+    public void finish(GameEngine engine) {
+        if(finished) {
+            return;
+        }
+        writeRecordHeader(RECORD_END);
+        writeVarint(engine.getScore());
+        writeVarint(engine.getMissedDots());
+        writeLong(new GameSnapshot().fingerprint(engine));
+        finished = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return a copy of the log recorded so far
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * @return the size of the log so far, in bytes
+     */
+    public int size() {
+        return length;
+    }
+
+    private void writeRecordHeader(int type) {
+        long stamp = getStamp(engine, startNanos, nanosPerTick);
+        writeVarint((stamp - lastStamp) << RECORD_TYPE_BITS | type);
+        lastStamp = stamp;
+    }
+
+    /**
+     * @return the half tick the engine is at: twice the ticks since the start, plus one once the
+     *         tick has been updated
+     */
+    static long getStamp(GameEngine engine, long startNanos, long nanosPerTick) {
+        long tick = (engine.getClock().nanoTime() - startNanos) / nanosPerTick;
+        return tick << 1 | (engine.isTickUpdated() ? 1 : 0);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void writeVarint(long value) {
+        while((value & ~0x7FL) != 0) {
+            writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeInt(int value) {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void writeByte(int value) {
+        if(length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, 2*length);
+        }
+        bytes[length++] = (byte) value;
+    }
+}
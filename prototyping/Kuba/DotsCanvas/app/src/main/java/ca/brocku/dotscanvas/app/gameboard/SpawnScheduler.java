@@ -0,0 +1,191 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * Decides when dots appear and which ones. Spawns are a single random process over the whole
+ * board: the time to the next spawn is drawn from an exponential distribution whose rate starts at
+ * an initial value and climbs linearly with play time up to a maximum, so the game gets harder the
+ * longer it lasts. Each spawn picks a dot uniformly from the eligible ones, the dots that have been
+ * invisible long enough to reappear.
+ *
+ * Spawn times only depend on the game clock, never on how often update is called, so the game
+ * plays the same at any frame rate, and the cost of a tick is proportional to the number of dots
+ * that spawn in it. The eligible dots are kept in a dense array with each dot's index, so adding,
+ * removing and picking a random one are all constant time.
+ *
+ * A spawn that comes due while no dot is eligible is dropped.
+ *
+ * On a large board, where tracking every eligible dot would cost memory in proportion to the
+ * board, the engine can instead take the spawn times from pollDue() and pick the dots itself. The
+ * index is only allocated once a dot is added to it.
+ */
+public class SpawnScheduler {
+    private static final int NOT_ELIGIBLE = -1;
+
+    private final GameRandom random;
+
+    private final int numberOfDots;
+    private int[] eligible; //IDs of the eligible dots, in no particular order; null until used
+    private int[] positions; //each dot's index in eligible, indexed by dot ID
+    private int eligibleCount;
+
+    //Spawns per second, at the start of the game and at its fastest, and how much faster each
+    //second of play makes them
+    private double initialRate;
+    private double rateIncrease;
+    private double maxRate;
+
+    private long startTime; //when play time started counting
+    private long nextSpawnTime;
+
+    /**
+     * @param numberOfDots the number of dots on the board; IDs run from 0 to this - 1
+     * @param random the source of spawn times and picks
+     */
+    public SpawnScheduler(int numberOfDots, GameRandom random) {
+        this.random = random;
+        this.numberOfDots = numberOfDots;
+    }
+
+    /**
+     * Sets the difficulty curve. Takes effect from the next spawn.
+     *
+     * @param initialRate spawns per second at the start of the game
+     * @param rateIncrease spawns per second added for every second of play
+     * @param maxRate the most spawns per second the game ever reaches
+     */
+    public void setRate(double initialRate, double rateIncrease, double maxRate) {
+        this.initialRate = initialRate;
+        this.rateIncrease = rateIncrease;
+        this.maxRate = maxRate;
+    }
+
+    /**
+     * Starts counting play time and schedules the first spawn.
+     *
+     * @param now the current time, in milliseconds
+     */
+    public void start(long now) {
+        startTime = now;
+        nextSpawnTime = now + sampleDelay(now);
+    }
+
+    /**
+     * @param now the current time, in milliseconds
+     * @return the spawn rate at that time, in spawns per second
+     */
+    public double getRate(long now) {
+        double rate = initialRate + rateIncrease * (now - startTime) / 1000.0;
+        return rate < maxRate ? rate : maxRate;
+    }
+
+    /**
+     * Takes the next spawn that has come due, if any.
+     *
+     * @param now the current time, in milliseconds
+     * @return the ID of the dot to show, which is no longer eligible, or -1 if none are due
+     */
+    public int pollSpawn(long now) {
+        while(pollDue(now)) {
+            if(eligibleCount > 0) {
+                int id = eligible[random.nextInt(eligibleCount)];
+                removeEligible(id);
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Takes the next spawn that has come due, if any, without picking a dot for it.
+     *
+     * @param now the current time, in milliseconds
+     * @return whether a spawn was due
+     */
+    public boolean pollDue(long now) {
+        if(nextSpawnTime > now) {
+            return false;
+        }
+        nextSpawnTime += sampleDelay(nextSpawnTime);
+        return true;
+    }
+
+    /**
+     * Makes a dot one that spawns can pick.
+     */
+    public void addEligible(int id) {
+        if(positions == null) {
+            eligible = new int[numberOfDots];
+            positions = new int[numberOfDots];
+            for(int i = 0; i < numberOfDots; i++) {
+                positions[i] = NOT_ELIGIBLE;
+            }
+        }
+        if(positions[id] == NOT_ELIGIBLE) {
+            positions[id] = eligibleCount;
+            eligible[eligibleCount++] = id;
+        }
+    }
+
+    /**
+     * Stops spawns from picking a dot, if they could.
+     */
+    public void removeEligible(int id) {
+        if(positions == null) {
+            return;
+        }
+        int position = positions[id];
+        if(position != NOT_ELIGIBLE) { //move the last eligible dot into the hole
+            int last = eligible[--eligibleCount];
+            eligible[position] = last;
+            positions[last] = position;
+            positions[id] = NOT_ELIGIBLE;
+        }
+    }
+
+    public boolean isEligible(int id) {
+        return positions != null && positions[id] != NOT_ELIGIBLE;
+    }
+
+    public int getEligibleCount() {
+        return eligibleCount;
+    }
+
+    /**
+     * @param index from 0 to getEligibleCount() - 1
+     * @return the ID of an eligible dot; the order changes as dots are added and removed
+     */
+    public int getEligible(int index) {
+        return eligible[index];
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getNextSpawnTime() {
+        return nextSpawnTime;
+    }
+
+    /**
+     * Puts the scheduler back into a saved state, with no dots eligible. Add the eligible dots
+     * back in their saved order so that the picks that follow are the same.
+     */
+    void restore(long startTime, long nextSpawnTime) {
+        while(eligibleCount > 0) {
+            removeEligible(eligible[eligibleCount - 1]);
+        }
+        this.startTime = startTime;
+        this.nextSpawnTime = nextSpawnTime;
+    }
+
+    /**
+     * @return the time from one spawn to the next, in milliseconds, for a spawn at the given time
+     */
+    private long sampleDelay(long time) {
+        double rate = getRate(time);
+        if(rate <= 0) {
+            return Long.MAX_VALUE / 2; //never, as far as a game is concerned
+        }
+        return 1 + (long) random.nextExponential(1000 / rate);
+    }
+}
@@ -0,0 +1,197 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * A fixed-size, lock-free queue of touch events between exactly one producer thread (the UI
+ * thread) and one consumer thread (the game thread). Events are stored field by field in primitive
+ * arrays, so neither offering nor polling allocates.
+ *
+ * The consumer calls poll() and then reads the polled event through the getters until the next
+ * call to poll().
+ *
+ * If the consumer falls behind, the queue fills with MOVEs, which are the only events that can be
+ * combined without losing a gesture. The last RESERVED slots are kept for ending gestures, so the
+ * UP or OUTSIDE of every queued DOWN always fits. A MOVE that doesn't fit outside the reserve is
+ * held by the producer instead and replaced by the next one. The held MOVE is queued as soon as
+ * there is room, and always before the event that ends its gesture. The engine follows the
+ * straight line between samples, so a merged MOVE still swipes the dots in between. A DOWN that
+ * doesn't fit is dropped with the rest of its gesture. Its UP is still queued, which only ends a
+ * gesture that never started.
+ */
+public class TouchEventQueue {
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_OUTSIDE = 3;
+
+    //Slots only a held MOVE and the events ending a gesture may take: the held MOVE, an OUTSIDE
+    //and an UP
+    private static final int RESERVED = 3;
+
+    private final int mask;
+    private final int[] actions;
+    private final float[] xs;
+    private final float[] ys;
+    private final long[] times;
+    private final int[] pointerIds;
+
+    //Sequence numbers of the next event to poll and the next free slot. Each is written by one
+    //thread only; the volatile write publishes the slot it covers to the other thread.
+    private volatile long head;
+    private volatile long tail;
+
+    //Producer-side: a MOVE waiting for room, and whether the rest of a gesture is being dropped
+    private boolean moveHeld;
+    private float heldX;
+    private float heldY;
+    private long heldTime;
+    private int heldPointerId;
+    private boolean droppingGesture;
+
+    private int droppedEvents; //producer-side count of events that did not fit
+    private int mergedEvents; //producer-side count of MOVEs replaced by a later one
+
+    //The most recently polled event; consumer-side
+    private int action;
+    private float x;
+    private float y;
+    private long time;
+    private int pointerId;
+
+    /**
+     * @param capacity the maximum number of queued events; rounded up to a power of two, and to at
+     *                 least twice the slots kept for ending gestures
+     */
+    public TouchEventQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 2*RESERVED)) << 1;
+        this.mask = size - 1;
+        this.actions = new int[size];
+        this.xs = new float[size];
+        this.ys = new float[size];
+        this.times = new long[size];
+        this.pointerIds = new int[size];
+    }
+
+    /**
+     * Adds an event to the queue. Producer thread only. When the queue is nearly full a MOVE is
+     * merged into the next one instead, and a DOWN is dropped along with its gesture; an UP or
+     * OUTSIDE is never dropped after a queued DOWN.
+     *
+     * @return false if the event was merged or dropped rather than queued
+     */
+    public boolean offer(int action, float x, float y, long time, int pointerId) {
+        boolean endsGesture = action == ACTION_UP || action == ACTION_OUTSIDE;
+        if(moveHeld && getFreeSlots() > (endsGesture ? RESERVED - 1 : RESERVED)) {
+            moveHeld = false;
+            enqueue(ACTION_MOVE, heldX, heldY, heldTime, heldPointerId);
+        }
+
+        if(endsGesture) {
+            if(moveHeld) { //only when the gesture's DOWN never got in
+                moveHeld = false;
+                droppedEvents++;
+            }
+            droppingGesture = false;
+            if(getFreeSlots() == 0) {
+                droppedEvents++;
+                return false;
+            }
+        } else if(droppingGesture) {
+            droppedEvents++;
+            return false;
+        } else if(getFreeSlots() <= RESERVED) {
+            if(action == ACTION_MOVE) {
+                if(moveHeld) {
+                    mergedEvents++;
+                }
+                moveHeld = true;
+                heldX = x;
+                heldY = y;
+                heldTime = time;
+                heldPointerId = pointerId;
+            } else {
+                droppingGesture = action == ACTION_DOWN;
+                droppedEvents++;
+            }
+            return false;
+        }
+
+        enqueue(action, x, y, time, pointerId);
+        return true;
+    }
+
+    private int getFreeSlots() {
+        return (int) (mask + 1 - (tail - head));
+    }
+
+    private void enqueue(int action, float x, float y, long time, int pointerId) {
+        long t = tail;
+        int slot = (int) t & mask;
+        actions[slot] = action;
+        xs[slot] = x;
+        ys[slot] = y;
+        times[slot] = time;
+        pointerIds[slot] = pointerId;
+        tail = t + 1;
+    }
+
+    /**
+     * Takes the oldest event off the queue and makes it readable through the getters. Consumer
+     * thread only.
+     *
+     * @return false if the queue was empty
+     */
+    public boolean poll() {
+        long h = head;
+        if(h == tail) {
+            return false;
+        }
+
+        int slot = (int) h & mask;
+        action = actions[slot];
+        x = xs[slot];
+        y = ys[slot];
+        time = times[slot];
+        pointerId = pointerIds[slot];
+        head = h + 1;
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * @return how many events have been dropped because the queue was full. Producer thread only.
+     */
+    public int getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    /**
+     * @return how many MOVEs have been merged into a later one because the queue was full.
+     *         Producer thread only.
+     */
+    public int getMergedEvents() {
+        return mergedEvents;
+    }
+
+    public int getAction() {
+        return action;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public int getPointerId() {
+        return pointerId;
+    }
+}
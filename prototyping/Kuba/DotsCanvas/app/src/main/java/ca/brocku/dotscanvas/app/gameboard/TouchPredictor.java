@@ -0,0 +1,140 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * Extrapolates where a moving finger will be at a slightly later time from the velocity between
+ * its last two samples. Drawing the chaining line to the predicted point instead of the last
+ * sample hides some of the delay between a touch being sampled and the frame being shown.
+ *
+ * Each prediction is checked once the samples around the predicted time arrive: the error is the
+ * distance between the predicted point and the actual path, linearly interpolated between samples.
+ */
+public class TouchPredictor {
+    private final long maxHorizon; //predictions further ahead than this are clamped
+
+    private int samples; //number of samples since reset(), up to 2
+    private float lastX, lastY;
+    private long lastTime;
+    private float velocityX, velocityY; //pixels per millisecond
+
+    //The pending prediction waiting for the actual position to be known
+    private boolean predictionPending;
+    private float predictedX, predictedY;
+    private long predictedTime;
+
+    //Error statistics since resetErrorStatistics()
+    private int evaluatedPredictions;
+    private double totalError;
+    private float maxError;
+
+    /**
+     * @param maxHorizon the furthest ahead of the last sample a prediction may reach, in
+     *                   milliseconds
+     */
+    public TouchPredictor(long maxHorizon) {
+        this.maxHorizon = maxHorizon;
+        reset();
+        resetErrorStatistics();
+    }
+
+    /**
+     * Forgets the current gesture, e.g. on touch down. The error statistics are kept.
+     */
+    public void reset() {
+        samples = 0;
+        velocityX = 0;
+        velocityY = 0;
+        predictionPending = false;
+    }
+
+    public void resetErrorStatistics() {
+        evaluatedPredictions = 0;
+        totalError = 0;
+        maxError = 0;
+    }
+
+    /**
+     * Adds a touch sample. Samples must arrive in time order.
+     *
+     * @param time the time the sample was taken, in milliseconds
+     */
+    public void addSample(float x, float y, long time) {
+        if(samples > 0) {
+            long elapsed = time - lastTime;
+
+            if(predictionPending && predictedTime <= time) {
+                //Where the finger actually was at the predicted time
+                float f = elapsed > 0 ? (float) (predictedTime - lastTime) / elapsed : 1;
+                if(f < 0) {
+                    f = 0;
+                }
+                float actualX = lastX + (x - lastX) * f;
+                float actualY = lastY + (y - lastY) * f;
+                recordError((float) Math.hypot(predictedX - actualX, predictedY - actualY));
+                predictionPending = false;
+            }
+
+            if(elapsed > 0) {
+                velocityX = (x - lastX) / elapsed;
+                velocityY = (y - lastY) / elapsed;
+            }
+        }
+
+        lastX = x;
+        lastY = y;
+        lastTime = time;
+        if(samples < 2) {
+            samples++;
+        }
+    }
+
+    /**
+     * Predicts the position at the given time. Only the most recent prediction is checked
+     * against the actual position.
+     *
+     * @param time the time to predict for, in milliseconds
+     * @return false if there are not yet enough samples, in which case nothing is predicted
+     */
+    public boolean predict(long time) {
+        if(samples < 2) {
+            return false;
+        }
+
+        long horizon = Math.min(Math.max(time - lastTime, 0), maxHorizon);
+        predictedX = lastX + velocityX * horizon;
+        predictedY = lastY + velocityY * horizon;
+        predictedTime = lastTime + horizon;
+        predictionPending = true;
+        return true;
+    }
+
+    public float getPredictedX() {
+        return predictedX;
+    }
+
+    public float getPredictedY() {
+        return predictedY;
+    }
+
+    public int getEvaluatedPredictions() {
+        return evaluatedPredictions;
+    }
+
+    /**
+     * @return the mean distance between predictions and actual positions, in pixels
+     */
+    public float getMeanError() {
+        return evaluatedPredictions == 0 ? 0 : (float) (totalError / evaluatedPredictions);
+    }
+
+    public float getMaxError() {
+        return maxError;
+    }
+
+    private void recordError(float error) {
+        evaluatedPredictions++;
+        totalError += error;
+        if(error > maxError) {
+            maxError = error;
+        }
+    }
+}
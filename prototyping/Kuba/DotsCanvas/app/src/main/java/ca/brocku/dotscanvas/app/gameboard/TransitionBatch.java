@@ -0,0 +1,236 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The transitions that came due in one tick, for GameEngine to apply together. On a large board a
+ * burst of dots shown at once, or a board set up all at once, can leave thousands of transitions
+ * due in the same tick; moving those dots to their next states is then split into bands of rows
+ * which run on an executor.
+ *
+ * The transitions are bucketed by band once, keeping the order they came due within each band.
+ * Each band then moves its own dots to their next states in the grid and counts its misses; no
+ * two bands touch the same dot. What the dots share, the state indexes, the scheduler, the
+ * spawner and the listener, is left to the engine, which merges the results on the calling thread
+ * in the order the transitions came due. That is the order the sequential update goes in, so the
+ * game plays out the same however the bands are scheduled.
+ */
+class TransitionBatch {
+    private static final DotState[] NEXT_STATES = new DotState[DotState.values().length];
+    static {
+        NEXT_STATES[DotState.VISIBLE.ordinal()] = DotState.DISAPPEARING; //missed
+        NEXT_STATES[DotState.DISAPPEARING.ordinal()] = DotState.INVISIBLE;
+        NEXT_STATES[DotState.INVISIBLE.ordinal()] = DotState.INVISIBLE; //becomes eligible to spawn
+        NEXT_STATES[DotState.APPEARING.ordinal()] = DotState.VISIBLE;
+    }
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final DotGrid grid;
+    private final ExecutorService executor;
+    private final int parallelThreshold;
+    private final List<Band> bands;
+    private final int rowsPerBand;
+    private final Band wholeBatch; //used below the threshold
+    private final List<Future<Integer>> futures; //of the bands running on the executor
+
+    //By the order the transitions came due
+    private int[] ids;
+    private long[] deadlines;
+    private DotState[] previousStates;
+    private long[] previousStartTimes;
+    private int size;
+
+    private int[] bandOrder; //positions in the arrays above, grouped by band
+    private long now; //when the transitions are applied
+
+    /**
+     * @param executor runs the bands
+     * @param bandCount how many bands of rows to split the grid into
+     * @param parallelThreshold the fewest transitions worth splitting into bands
+     */
+    TransitionBatch(DotGrid grid, ExecutorService executor, int bandCount, int parallelThreshold) {
+        this.grid = grid;
+        this.executor = executor;
+        this.parallelThreshold = parallelThreshold;
+
+        int rows = grid.getGridLength();
+        bandCount = Math.max(1, Math.min(bandCount, rows));
+        this.rowsPerBand = (rows + bandCount - 1) / bandCount;
+        this.bands = new ArrayList<Band>(bandCount);
+        for(int b = 0; b*rowsPerBand < rows; b++) {
+            bands.add(new Band(true));
+        }
+        this.wholeBatch = new Band(false);
+        this.futures = new ArrayList<Future<Integer>>(bands.size());
+
+        this.ids = new int[INITIAL_CAPACITY];
+        this.deadlines = new long[INITIAL_CAPACITY];
+        this.previousStates = new DotState[INITIAL_CAPACITY];
+        this.previousStartTimes = new long[INITIAL_CAPACITY];
+        this.bandOrder = new int[INITIAL_CAPACITY];
+    }
+
+    void add(int id, long deadline) {
+        if(size == ids.length) {
+            int capacity = 2*size;
+            int[] newIds = new int[capacity];
+            long[] newDeadlines = new long[capacity];
+            System.arraycopy(ids, 0, newIds, 0, size);
+            System.arraycopy(deadlines, 0, newDeadlines, 0, size);
+            ids = newIds;
+            deadlines = newDeadlines;
+            previousStates = new DotState[capacity];
+            previousStartTimes = new long[capacity];
+            bandOrder = new int[capacity];
+        }
+        ids[size] = id;
+        deadlines[size] = deadline;
+        size++;
+    }
+
+    /**
+     * Moves every dot in the batch to its next state in the grid, as of the given time, in bands
+     * on the executor if there are enough of them. The state indexes are left as they were; see
+     * GameEngine.applyTransitionBatch().
+     *
+     * @return how many of the transitions are misses
+     */
+    int apply(long now) {
+        this.now = now;
+        if(size < parallelThreshold || bands.size() == 1) {
+            wholeBatch.setRange(0, size);
+            return wholeBatch.call();
+        }
+
+        bucket();
+        //The calling thread takes the first band rather than wait idle
+        futures.clear();
+        for(int b = 1; b < bands.size(); b++) {
+            futures.add(executor.submit(bands.get(b)));
+        }
+        int misses = bands.get(0).call();
+
+        //A band cannot be taken back once it has started, so an interrupt waits for the rest
+        //and is passed on afterwards
+        boolean interrupted = false;
+        for(Future<Integer> result: futures) {
+            while(true) {
+                try {
+                    misses += result.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("A band of the update failed", e.getCause());
+                }
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return misses;
+    }
+
+    /**
+     * Groups the positions by band, keeping the order they came due within each band. Two passes
+     * of a counting sort, so the work grows with the batch rather than with bands*batch.
+     */
+    private void bucket() {
+        for(Band band: bands) {
+            band.setRange(0, 0);
+        }
+        for(int i = 0; i < size; i++) {
+            getBand(ids[i]).end++;
+        }
+        int start = 0;
+        for(Band band: bands) {
+            int count = band.end;
+            band.setRange(start, start);
+            start += count;
+        }
+        for(int i = 0; i < size; i++) {
+            bandOrder[getBand(ids[i]).end++] = i;
+        }
+    }
+
+    private Band getBand(int id) {
+        return bands.get(grid.getRow(id) / rowsPerBand);
+    }
+
+    /**
+     * Puts a dot back into the state it was in before apply(), e.g. when the game ended on an
+     * earlier transition in the batch.
+     */
+    void undo(int index) {
+        if(previousStates[index] != DotState.INVISIBLE) {
+            grid.setStateUnindexed(ids[index], previousStates[index], previousStartTimes[index]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getId(int index) {
+        return ids[index];
+    }
+
+    long getDeadline(int index) {
+        return deadlines[index];
+    }
+
+    DotState getPreviousState(int index) {
+        return previousStates[index];
+    }
+
+    DotState getNextState(int index) {
+        return NEXT_STATES[previousStates[index].ordinal()];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Applies the transitions of a range of positions, either in the order they came due or in
+     * bandOrder.
+     */
+    private class Band implements Callable<Integer> {
+        private final boolean bucketed; //whether the range is in bandOrder
+        private int start;
+        private int end; //exclusive
+
+        Band(boolean bucketed) {
+            this.bucketed = bucketed;
+        }
+
+        void setRange(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Integer call() {
+            int misses = 0;
+            for(int k = start; k < end; k++) {
+                int i = bucketed ? bandOrder[k] : k;
+                int id = ids[i];
+                DotState state = grid.getState(id);
+                previousStates[i] = state;
+                if(state != DotState.INVISIBLE) {
+                    previousStartTimes[i] = grid.getStateStartTime(id);
+                    grid.setStateUnindexed(id, NEXT_STATES[state.ordinal()], now);
+                }
+                if(state == DotState.VISIBLE) {
+                    misses++;
+                }
+            }
+            return misses;
+        }
+    }
+}
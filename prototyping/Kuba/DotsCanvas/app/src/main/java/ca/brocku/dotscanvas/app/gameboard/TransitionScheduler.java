@@ -0,0 +1,203 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * Keeps each dot's next state transition in a binary min-heap keyed on its deadline, so that a
+ * tick only has to look at the dots whose transition is due instead of polling every dot.
+ *
+ * A dot has at most one pending transition. Scheduling a dot again replaces its pending
+ * transition, and cancel() removes it, e.g. when a tap clears a dot before it expires.
+ *
+ * Transitions due at the same time come out in dot ID order. The order only depends on what is
+ * scheduled, not on the history of the heap, so a game restored from a snapshot replays exactly.
+ *
+ * Memory grows with the number of dots scheduled rather than with the board: the heap grows as
+ * needed, and each dot's heap position is kept in PagedPositions.
+ */
+public class TransitionScheduler {
+    private static final int NOT_SCHEDULED = PagedPositions.NONE;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] heap; //dot IDs ordered by deadline
+    private long[] heapDeadlines; //the deadline of the dot at each heap position
+    private final PagedPositions positions; //each dot's index in the heap
+    private int size;
+
+    /**
+     * @param numberOfDots the number of dots that can be scheduled; IDs run from 0 to this - 1
+     */
+    public TransitionScheduler(int numberOfDots) {
+        this.heap = new int[Math.min(numberOfDots, INITIAL_CAPACITY)];
+        this.heapDeadlines = new long[heap.length];
+        this.positions = new PagedPositions(numberOfDots);
+        this.size = 0;
+    }
+
+    /**
+     * Schedules a dot's next transition, replacing any transition already pending for it.
+     *
+     * @param id the dot's ID
+     * @param deadline the time at which the transition is due
+     */
+    public void schedule(int id, long deadline) {
+        int position = positions.get(id);
+        if(position == NOT_SCHEDULED) {
+            if(size == heap.length) {
+                grow();
+            }
+            position = size++;
+            heap[position] = id;
+            heapDeadlines[position] = deadline;
+            siftUp(position);
+        } else {
+            long previous = heapDeadlines[position];
+            heapDeadlines[position] = deadline;
+            if(deadline < previous) {
+                siftUp(position);
+            } else {
+                siftDown(position);
+            }
+        }
+    }
+
+    /**
+     * Drops a dot's pending transition, if it has one.
+     *
+     * @param id the dot's ID
+     */
+    public void cancel(int id) {
+        int position = positions.get(id);
+        if(position != NOT_SCHEDULED) {
+            removeAt(position);
+        }
+    }
+
+    public boolean isScheduled(int id) {
+        return positions.get(id) != NOT_SCHEDULED;
+    }
+
+    /**
+     * @return the deadline of the dot's pending transition; only meaningful if it has one
+     */
+    public long getDeadline(int id) {
+        int position = positions.get(id);
+        return position == NOT_SCHEDULED ? Long.MAX_VALUE : heapDeadlines[position];
+    }
+
+    /**
+     * Removes and returns the dot with the earliest deadline, if that deadline has been reached.
+     *
+     * @param now the current time
+     * @return the ID of a dot whose transition is due, or -1 if none are due
+     */
+    public int pollDue(long now) {
+        if(size == 0 || heapDeadlines[0] > now) {
+            return -1;
+        }
+        int id = heap[0];
+        removeAt(0);
+        return id;
+    }
+
+    /**
+     * @return the earliest pending deadline, or Long.MAX_VALUE if nothing is scheduled
+     */
+    public long peekDeadline() {
+        return size == 0 ? Long.MAX_VALUE : heapDeadlines[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index from 0 to size() - 1
+     * @return the ID of a scheduled dot, in no particular order
+     */
+    public int get(int index) {
+        return heap[index];
+    }
+
+    public void clear() {
+        for(int i = 0; i < size; i++) {
+            positions.set(heap[i], NOT_SCHEDULED);
+        }
+        size = 0;
+    }
+
+    private void grow() {
+        int capacity = Math.max(INITIAL_CAPACITY, 2*heap.length);
+        int[] newHeap = new int[capacity];
+        long[] newDeadlines = new long[capacity];
+        System.arraycopy(heap, 0, newHeap, 0, size);
+        System.arraycopy(heapDeadlines, 0, newDeadlines, 0, size);
+        heap = newHeap;
+        heapDeadlines = newDeadlines;
+    }
+
+    private void removeAt(int position) {
+        positions.set(heap[position], NOT_SCHEDULED);
+
+        size--;
+        if(position != size) { //move the last entry into the hole and restore the heap order
+            int last = heap[size];
+            heap[position] = last;
+            heapDeadlines[position] = heapDeadlines[size];
+            positions.set(last, position);
+            siftDown(position);
+            siftUp(positions.get(last));
+        }
+    }
+
+    private void siftUp(int position) {
+        int id = heap[position];
+        long deadline = heapDeadlines[position];
+        while(position > 0) {
+            int parent = (position - 1) >>> 1;
+            if(!isBefore(deadline, id, heapDeadlines[parent], heap[parent])) {
+                break;
+            }
+            move(parent, position);
+            position = parent;
+        }
+        heap[position] = id;
+        heapDeadlines[position] = deadline;
+        positions.set(id, position);
+    }
+
+    private void siftDown(int position) {
+        int id = heap[position];
+        long deadline = heapDeadlines[position];
+        int half = size >>> 1;
+        while(position < half) {
+            int child = 2*position + 1;
+            int right = child + 1;
+            if(right < size && isBefore(heapDeadlines[right], heap[right], heapDeadlines[child], heap[child])) {
+                child = right;
+            }
+            if(!isBefore(heapDeadlines[child], heap[child], deadline, id)) {
+                break;
+            }
+            move(child, position);
+            position = child;
+        }
+        heap[position] = id;
+        heapDeadlines[position] = deadline;
+        positions.set(id, position);
+    }
+
+    /**
+     * Moves the heap entry at from to to.
+     */
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        heapDeadlines[to] = heapDeadlines[from];
+        positions.set(heap[to], to);
+    }
+
+    /**
+     * @return whether dot a's transition comes before dot b's
+     */
+    private static boolean isBefore(long deadlineA, int a, long deadlineB, int b) {
+        return deadlineA < deadlineB || (deadlineA == deadlineB && a < b);
+    }
+}
@@ -0,0 +1,70 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the latest of a stream of objects from one writer thread to one reader thread without
+ * locks and without allocating. There are three buffers: the writer fills the back one, the reader
+ * reads the front one, and the third sits in the middle holding the latest published buffer.
+ * Publishing swaps the back buffer into the middle, and the reader swaps the middle buffer to the
+ * front when it wants something newer, so neither side ever waits for the other and the reader
+ * always gets the latest complete buffer. Buffers the reader is too slow to see are skipped.
+ *
+ * The buffers are reused, so the writer must fill in everything the reader looks at each time.
+ *
+ * @param <T> the type of the buffers
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4; //set on the middle index when it hasn't been read yet
+
+    private final Object[] buffers;
+    private final AtomicInteger middle; //index of the middle buffer, plus FRESH
+    private int back; //writer thread only
+    private int front; //reader thread only
+
+    public TripleBuffer(T first, T second, T third) {
+        this.buffers = new Object[] {first, second, third};
+        this.back = 0;
+        this.middle = new AtomicInteger(1);
+        this.front = 2;
+    }
+
+    /**
+     * @return the buffer for the writer to fill; writer thread only
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * Makes the back buffer the latest one and gives the writer another to fill. Writer thread
+     * only.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Moves the latest published buffer to the front, if there is one the reader hasn't seen.
+     * Reader thread only.
+     *
+     * @return whether the front buffer changed
+     */
+    public boolean update() {
+        if((middle.get() & FRESH) == 0) {
+            return false;
+        }
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * @return the buffer for the reader to read; reader thread only
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        return (T) buffers[front];
+    }
+}
@@ -0,0 +1,174 @@
+package ca.brocku.dotscanvas.app.gameboard;
+
+/**
+ * The part of the board shown on the screen, for boards too large to show whole. The board is
+ * laid out in board pixels (see GameEngine.setBoardSize()); the viewport maps them to the screen
+ * with an offset and a scale, and can be panned and zoomed within limits. The board never scrolls
+ * further than its edges, and is centered when it is smaller than the screen.
+ *
+ * Rows run along the x axis and columns along the y axis, as in DotGrid.
+ */
+public class Viewport {
+    private int screenWidth = 1;
+    private int screenHeight = 1;
+
+    private int gridLength = 1;
+    private float pixelsPerDotRegion = 1;
+
+    private float offsetX; //board coordinates of the screen's top-left corner
+    private float offsetY;
+    private float scale = 1; //screen pixels per board pixel
+    private float minScale = 1;
+    private float maxScale = 1;
+
+    public void setScreenSize(int width, int height) {
+        screenWidth = width;
+        screenHeight = height;
+        clamp();
+    }
+
+    /**
+     * @param gridLength the number of dots along each side of the board
+     * @param pixelsPerDotRegion the side length of each dot's region, in board pixels
+     */
+    public void setBoard(int gridLength, float pixelsPerDotRegion) {
+        this.gridLength = gridLength;
+        this.pixelsPerDotRegion = pixelsPerDotRegion;
+        clamp();
+    }
+
+    /**
+     * Limits how far the viewport can be zoomed; the current scale is clamped to the limits.
+     */
+    public void setScaleLimits(float minScale, float maxScale) {
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        scale = Math.max(minScale, Math.min(scale, maxScale));
+        clamp();
+    }
+
+    /**
+     * Centers the viewport on a point of the board.
+     */
+    public void centerOn(float boardX, float boardY) {
+        offsetX = boardX - screenWidth / scale / 2;
+        offsetY = boardY - screenHeight / scale / 2;
+        clamp();
+    }
+
+    /**
+     * Moves the board along with a drag.
+     *
+     * @param dx how far the drag moved across the screen, in screen pixels
+     * @param dy how far the drag moved down the screen, in screen pixels
+     */
+    public void pan(float dx, float dy) {
+        offsetX -= dx / scale;
+        offsetY -= dy / scale;
+        clamp();
+    }
+
+    /**
+     * Zooms about a point on the screen, which stays over the same point of the board.
+     *
+     * @param factor how much to scale by; above 1 zooms in
+     */
+    public void zoom(float factor, float focusX, float focusY) {
+        float boardX = toBoardX(focusX);
+        float boardY = toBoardY(focusY);
+        scale = Math.max(minScale, Math.min(scale * factor, maxScale));
+        offsetX = boardX - focusX / scale;
+        offsetY = boardY - focusY / scale;
+        clamp();
+    }
+
+    private void clamp() {
+        float boardLength = gridLength * pixelsPerDotRegion;
+        offsetX = clamp(offsetX, boardLength, screenWidth / scale);
+        offsetY = clamp(offsetY, boardLength, screenHeight / scale);
+    }
+
+    private static float clamp(float offset, float boardLength, float visibleLength) {
+        if(visibleLength >= boardLength) {
+            return (boardLength - visibleLength) / 2;
+        }
+        return Math.max(0, Math.min(offset, boardLength - visibleLength));
+    }
+
+    public float toBoardX(float screenX) {
+        return screenX / scale + offsetX;
+    }
+
+    public float toBoardY(float screenY) {
+        return screenY / scale + offsetY;
+    }
+
+    public float toScreenX(float boardX) {
+        return (boardX - offsetX) * scale;
+    }
+
+    public float toScreenY(float boardY) {
+        return (boardY - offsetY) * scale;
+    }
+
+    public int getScreenWidth() {
+        return screenWidth;
+    }
+
+    public int getScreenHeight() {
+        return screenHeight;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public float getOffsetX() {
+        return offsetX;
+    }
+
+    public float getOffsetY() {
+        return offsetY;
+    }
+
+    //The rows and columns of the dots whose regions are at least partly on screen
+
+    public int getFirstVisibleRow() {
+        return toGridIndex(offsetX);
+    }
+
+    public int getLastVisibleRow() {
+        return toGridIndex(offsetX + screenWidth / scale);
+    }
+
+    public int getFirstVisibleCol() {
+        return toGridIndex(offsetY);
+    }
+
+    public int getLastVisibleCol() {
+        return toGridIndex(offsetY + screenHeight / scale);
+    }
+
+    //The rows and columns of the dots whose centers are on screen, where dots can be played
+
+    public int getFirstPlayableRow() {
+        return toGridIndex(offsetX + pixelsPerDotRegion / 2);
+    }
+
+    public int getLastPlayableRow() {
+        return toGridIndex(offsetX + screenWidth / scale - pixelsPerDotRegion / 2);
+    }
+
+    public int getFirstPlayableCol() {
+        return toGridIndex(offsetY + pixelsPerDotRegion / 2);
+    }
+
+    public int getLastPlayableCol() {
+        return toGridIndex(offsetY + screenHeight / scale - pixelsPerDotRegion / 2);
+    }
+
+    private int toGridIndex(float boardCoordinate) {
+        int index = (int) Math.floor(boardCoordinate / pixelsPerDotRegion);
+        return Math.max(0, Math.min(index, gridLength - 1));
+    }
+}
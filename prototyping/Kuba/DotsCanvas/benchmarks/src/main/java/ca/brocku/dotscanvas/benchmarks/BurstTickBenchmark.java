@@ -0,0 +1,90 @@
+package ca.brocku.dotscanvas.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import ca.brocku.dotscanvas.app.gameboard.DotState;
+import ca.brocku.dotscanvas.app.gameboard.FrameClock;
+import ca.brocku.dotscanvas.app.gameboard.GameEngine;
+
+/**
+ * A tick in which a burst of transitions comes due at once on a 1000x1000 board: burst dots,
+ * spread over the board, were all shown at the same moment and are all missed in the measured
+ * tick. Far more than a screen's worth of play can produce, so this is the worst case for the
+ * update rather than a typical tick; see GameEngineBenchmark for those.
+ *
+ * With bands set, the burst is applied in that many bands of rows, on the benchmark thread and a
+ * pool; see GameEngine.setUpdateExecutor().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BurstTickBenchmark {
+    private static final int GRID_LENGTH = 1000;
+    private static final int PLAY_LENGTH = 16;
+
+    @Param({"256", "4096", "65536"})
+    public int burst;
+
+    @Param({"0", "4"})
+    public int bands;
+
+    private GameEngine engine;
+    private ExecutorService executor;
+    private int stride;
+
+    @Setup
+    public void setUp() {
+        engine = new GameEngine(GRID_LENGTH, 42, new FrameClock());
+        engine.setDotsToMiss(Integer.MAX_VALUE);
+        engine.setBoardSize(GRID_LENGTH * 60);
+        engine.setPlayArea(0, 0, PLAY_LENGTH - 1, PLAY_LENGTH - 1);
+        if(bands > 0) {
+            executor = Executors.newFixedThreadPool(bands - 1);
+            engine.setUpdateExecutor(executor, bands);
+        }
+        stride = GRID_LENGTH * GRID_LENGTH / burst;
+    }
+
+    /**
+     * Shows the burst and moves the clock to just past the end of its visible time.
+     */
+    @Setup(Level.Invocation)
+    public void showBurst() {
+        for(int i = 0; i < burst; i++) {
+            engine.setDotState(i * stride, DotState.VISIBLE);
+        }
+        engine.getClock().advance((GameEngine.DURATION_VISIBLE + 1) * FrameClock.NANOS_PER_MILLI);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if(executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int burstTick() {
+        engine.update();
+        return engine.getMissedDots();
+    }
+}
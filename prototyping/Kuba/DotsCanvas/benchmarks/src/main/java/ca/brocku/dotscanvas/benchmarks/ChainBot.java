@@ -0,0 +1,116 @@
+package ca.brocku.dotscanvas.benchmarks;
+
+import ca.brocku.dotscanvas.app.gameboard.ChainSolver;
+import ca.brocku.dotscanvas.app.gameboard.DotGrid;
+import ca.brocku.dotscanvas.app.gameboard.FrameClock;
+import ca.brocku.dotscanvas.app.gameboard.GameEngine;
+import ca.brocku.dotscanvas.app.gameboard.TouchEventQueue;
+
+/**
+ * Plays games headless, swiping whatever chain a ChainSolver finds best a few times a second, to
+ * put the engine through far more play than testing by hand can. Every swipe is checked to score
+ * exactly what the solver expected, and any game that throws is reported with its seed so that it
+ * can be played again.
+ *
+ * Games are seeded 0, 1, 2, ... and only vary between runs where the solver runs out of time. On
+ * a large board, dots only spawn in a block in the middle, as they would around the screen.
+ *
+ * Run with: ../gradlew :benchmarks:bot -PbotArgs="[games] [gridLength] [budgetMicros]"
+ * Exits with status 1 if any swipe scored other than expected or any game threw.
+ */
+public class ChainBot {
+    private static final long NANOS_PER_TICK = 1000000000L / 120;
+    private static final int TICKS_PER_MOVE = 30; //a quarter of a second to spot and swipe a chain
+    private static final long MAX_TICKS = 10 * 60 * 120; //ten simulated minutes
+    private static final float PIXELS_PER_DOT_REGION = 60;
+    private static final int LARGE_BOARD_PLAY_LENGTH = 16;
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int gridLength = args.length > 1 ? Integer.parseInt(args[1]) : GameEngine.DEFAULT_GRID_LENGTH;
+        long budget = (args.length > 2 ? Long.parseLong(args[2]) : 1000) * 1000;
+
+        ChainSolver solver = new ChainSolver();
+        long totalScore = 0;
+        int bestScore = 0;
+        long totalTicks = 0;
+        long moves = 0;
+        long optimalMoves = 0;
+        int mismatches = 0;
+        int failures = 0;
+
+        long startTime = System.nanoTime();
+        for(int seed = 0; seed < games; seed++) {
+            GameEngine engine = new GameEngine(gridLength, seed, new FrameClock());
+            engine.setBoardSize(gridLength * PIXELS_PER_DOT_REGION);
+            if(engine.isLargeBoard()) {
+                int first = (gridLength - LARGE_BOARD_PLAY_LENGTH) / 2;
+                int last = first + LARGE_BOARD_PLAY_LENGTH - 1;
+                engine.setPlayArea(first, first, last, last);
+            }
+
+            long tick = 0;
+            try {
+                while(!engine.isGameOver() && tick < MAX_TICKS) {
+                    engine.step(NANOS_PER_TICK, null);
+                    tick++;
+                    if(tick % TICKS_PER_MOVE != 0 || engine.isGameOver()) {
+                        continue;
+                    }
+
+                    int length = solver.solve(engine.getDotGrid(), budget);
+                    if(length == 0) {
+                        continue;
+                    }
+                    moves++;
+                    if(solver.isOptimal()) {
+                        optimalMoves++;
+                    }
+
+                    int expected = engine.getScore() + solver.getScore();
+                    swipe(engine, solver.getChain(), length);
+                    if(engine.getScore() != expected || engine.isInteracting()) {
+                        mismatches++;
+                        System.out.println("Game " + seed + ", tick " + tick + ": a chain of " + length
+                                + " scored " + (engine.getScore() - expected + solver.getScore())
+                                + " instead of " + solver.getScore());
+                    }
+                }
+            } catch (RuntimeException e) {
+                failures++;
+                System.out.println("Game " + seed + " threw at tick " + tick + ":");
+                e.printStackTrace(System.out);
+            }
+
+            totalScore += engine.getScore();
+            bestScore = Math.max(bestScore, engine.getScore());
+            totalTicks += tick;
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        System.out.println(games + " games on a " + gridLength + "x" + gridLength + " board"
+                + ": mean score " + String.format("%.1f", (double) totalScore / games) + ", best " + bestScore
+                + ", mean length " + String.format("%.1f", (double) totalTicks / games / 120) + " s"
+                + ", " + moves + " chains (" + optimalMoves + " proved optimal)"
+                + ", " + mismatches + " mismatched, " + failures + " failed"
+                + ", played in " + elapsed / 1000000 + " ms");
+
+        if(mismatches > 0 || failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Swipes through the chain's dots from center to center, all within the current tick.
+     */
+    private static void swipe(GameEngine engine, int[] chain, int length) {
+        DotGrid grid = engine.getDotGrid();
+        long time = engine.getClock().now();
+        engine.onTouch(TouchEventQueue.ACTION_DOWN, grid.getCenterX(chain[0]), grid.getCenterY(chain[0]), time);
+        for(int i = 1; i < length; i++) {
+            engine.onTouch(TouchEventQueue.ACTION_MOVE, grid.getCenterX(chain[i]), grid.getCenterY(chain[i]), time);
+        }
+        engine.onTouch(TouchEventQueue.ACTION_UP, grid.getCenterX(chain[length - 1]),
+                grid.getCenterY(chain[length - 1]), time);
+    }
+}
@@ -0,0 +1,60 @@
+package ca.brocku.dotscanvas.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.brocku.dotscanvas.app.gameboard.ChainSolver;
+import ca.brocku.dotscanvas.app.gameboard.DotGrid;
+import ca.brocku.dotscanvas.app.gameboard.DotState;
+import ca.brocku.dotscanvas.app.gameboard.FrameClock;
+
+/**
+ * Finding the longest chain on a board with a given share of its dots VISIBLE. The budget is far
+ * longer than any of these take, so the time measured is that of a complete search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainSolverBenchmark {
+    private static final long BUDGET = 1000000000L;
+
+    @Param({"6", "8", "32"})
+    public int gridLength;
+
+    @Param({"0.3", "0.6"})
+    public double visibleShare;
+
+    private DotGrid grid;
+    private final ChainSolver solver = new ChainSolver();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        grid = new DotGrid(gridLength, new FrameClock());
+        for(int id = 0; id < grid.size(); id++) {
+            if(random.nextDouble() < visibleShare) {
+                grid.setState(id, DotState.VISIBLE);
+            }
+        }
+    }
+
+    @Benchmark
+    public int solve() {
+        return solver.solve(grid, BUDGET);
+    }
+}
@@ -0,0 +1,95 @@
+package ca.brocku.dotscanvas.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.brocku.dotscanvas.app.gameboard.DotChain;
+import ca.brocku.dotscanvas.app.gameboard.DotGrid;
+import ca.brocku.dotscanvas.app.gameboard.FrameClock;
+
+/**
+ * Building a chain dot by dot, checking whether dots are in it and moving the end of its line, as a
+ * swipe does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DotChainBenchmark {
+    private static final int MAX_CHAIN_LENGTH = 32;
+    private static final int LOOKUPS = 1024; //power of two
+
+    @Param({"6", "32", "100", "1000"})
+    public int gridLength;
+
+    private DotChain chain;
+    private int[] path; //a snake through the top of the grid
+    private int[] lookups;
+    private int lookup;
+
+    @Setup
+    public void setUp() {
+        DotGrid grid = new DotGrid(gridLength, new FrameClock());
+        chain = new DotChain(grid);
+
+        path = new int[Math.min(MAX_CHAIN_LENGTH, grid.size())];
+        for(int i = 0; i < path.length; i++) {
+            int row = i / gridLength;
+            int col = row % 2 == 0 ? i % gridLength : gridLength - 1 - i % gridLength;
+            path[i] = row * gridLength + col;
+        }
+
+        Random random = new Random(42);
+        lookups = new int[LOOKUPS];
+        for(int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = random.nextBoolean() ? path[random.nextInt(path.length)] : random.nextInt(grid.size());
+        }
+
+        for(int id: path) {
+            chain.push(id);
+        }
+    }
+
+    /**
+     * Clears the chain and rebuilds it along the whole path.
+     */
+    @Benchmark
+    public int rebuild() {
+        chain.clear();
+        for(int i = 0; i < path.length; i++) {
+            if(!chain.contains(path[i])) {
+                chain.push(path[i]);
+            }
+        }
+        return chain.peek();
+    }
+
+    /**
+     * Moves the line end as each touch sample or prediction does; only its vertices are patched.
+     */
+    @Benchmark
+    public float moveLineEnd() {
+        int i = lookup++ & (LOOKUPS - 1);
+        chain.setLineEnd(i, -i);
+        return chain.getLineVertices()[chain.getLineVertexCount() - 1];
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return chain.contains(lookups[lookup++ & (LOOKUPS - 1)]);
+    }
+}
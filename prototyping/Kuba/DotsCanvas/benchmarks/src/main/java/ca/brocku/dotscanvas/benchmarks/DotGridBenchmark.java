@@ -0,0 +1,119 @@
+package ca.brocku.dotscanvas.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ca.brocku.dotscanvas.app.gameboard.Dot;
+import ca.brocku.dotscanvas.app.gameboard.DotGrid;
+import ca.brocku.dotscanvas.app.gameboard.DotState;
+import ca.brocku.dotscanvas.app.gameboard.FrameClock;
+
+/**
+ * Traversing a DotGrid, through its iterator, through the ID based accessors and through the
+ * visitors over its state indexes, hit-testing touches against it and looking up neighbours.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DotGridBenchmark {
+    private static final float PIXELS_PER_DOT_REGION = 60;
+    private static final int TOUCHES = 1024; //power of two
+
+    @Param({"6", "32", "100", "1000"})
+    public int gridLength;
+
+    private DotGrid grid;
+    private float[] touchXs;
+    private float[] touchYs;
+    private int touch;
+
+    private final VisibleCounter visibleCounter = new VisibleCounter();
+    private final int[] neighbors = new int[8];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        grid = new DotGrid(gridLength, new FrameClock());
+        grid.setGeometry(PIXELS_PER_DOT_REGION, PIXELS_PER_DOT_REGION / 3);
+        for(int id = 0; id < grid.size(); id++) {
+            if(random.nextInt(3) == 0) {
+                grid.setState(id, DotState.VISIBLE);
+            }
+        }
+
+        float boardLength = gridLength * PIXELS_PER_DOT_REGION;
+        touchXs = new float[TOUCHES];
+        touchYs = new float[TOUCHES];
+        for(int i = 0; i < TOUCHES; i++) {
+            touchXs[i] = random.nextFloat() * boardLength;
+            touchYs[i] = random.nextFloat() * boardLength;
+        }
+    }
+
+    @Benchmark
+    public int iterator() {
+        int visible = 0;
+        for(Dot dot: grid) {
+            if(dot.isVisible()) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+
+    @Benchmark
+    public int indexedTraversal() {
+        int visible = 0;
+        for(int id = 0; id < grid.size(); id++) {
+            if(grid.isVisible(id)) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+
+    @Benchmark
+    public int visibleVisitor() {
+        visibleCounter.count = 0;
+        grid.forEachVisible(visibleCounter);
+        return visibleCounter.count;
+    }
+
+    @Benchmark
+    public int hitTest() {
+        int i = touch++ & (TOUCHES - 1);
+        return grid.getDotIdAt(touchXs[i], touchYs[i], 1.4f);
+    }
+
+    @Benchmark
+    public int visibleNeighbors() {
+        int i = touch++ & (TOUCHES - 1);
+        int id = grid.getDotIdAt(touchXs[i], touchYs[i], 3); //the nearest dot
+        return grid.getVisibleNeighbors(id, neighbors);
+    }
+
+    private static class VisibleCounter implements DotGrid.DotVisitor {
+        int count;
+
+        @Override
+        public void visit(int id) {
+            count++;
+        }
+    }
+}
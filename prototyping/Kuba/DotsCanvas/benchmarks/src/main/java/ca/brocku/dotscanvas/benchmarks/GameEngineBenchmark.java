@@ -0,0 +1,76 @@
+package ca.brocku.dotscanvas.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import ca.brocku.dotscanvas.app.gameboard.FrameClock;
+import ca.brocku.dotscanvas.app.gameboard.GameEngine;
+
+/**
+ * The per-tick state update of a game left to run on its own. The miss limit is lifted so that
+ * the board keeps turning over, and the board is run for a while first so that it is measured in
+ * its steady state rather than while every dot is still waiting to appear for the first time.
+ *
+ * With bands set, ticks with enough transitions due are applied in that many bands of rows, on
+ * the benchmark thread and a pool; see GameEngine.setUpdateExecutor().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameEngineBenchmark {
+    private static final long NANOS_PER_TICK = 1000000000L / 120;
+    private static final long WARM_UP_TICKS = 30 * 120; //30 simulated seconds
+
+    @Param({"6", "32", "100", "1000"})
+    public int gridLength;
+
+    @Param({"0", "4"})
+    public int bands;
+
+    private GameEngine engine;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        engine = new GameEngine(gridLength, 42, new FrameClock());
+        engine.setDotsToMiss(Integer.MAX_VALUE);
+        engine.setBoardSize(gridLength * 60);
+        if(bands > 0) {
+            executor = Executors.newFixedThreadPool(bands - 1);
+            engine.setUpdateExecutor(executor, bands);
+        }
+        for(long tick = 0; tick < WARM_UP_TICKS; tick++) {
+            engine.step(NANOS_PER_TICK, null);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if(executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int updateTick() {
+        engine.step(NANOS_PER_TICK, null);
+        return engine.getMissedDots();
+    }
+}
@@ -0,0 +1,55 @@
+package ca.brocku.dotscanvas.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import ca.brocku.dotscanvas.app.gameboard.GameEngine;
+import ca.brocku.dotscanvas.app.gameboard.ReplayPlayer;
+
+/**
+ * Plays recorded games headless, as fast as possible, and checks that each one ends in the
+ * recorded state; see ReplayPlayer.matches(). Exits with status 1 if any replay diverges, e.g.
+ * because a change to the rules made old recordings incomparable.
+ *
+ * Pull a recording off a debug build with
+ *  adb shell run-as ca.brocku.dotscanvas.app cat files/replay.bin > replay.bin
+ * and run with: ../gradlew :benchmarks:replay -Preplays="replay.bin ..."
+ */
+public class ReplayVerifier {
+    public static void main(String[] args) throws IOException {
+        boolean allMatched = true;
+
+        for(String path: args) {
+            byte[] log = readFile(new File(path));
+            ReplayPlayer player = new ReplayPlayer(log);
+
+            long startTime = System.nanoTime();
+            GameEngine engine = player.play();
+            long elapsed = System.nanoTime() - startTime;
+
+            boolean matched = player.matches(engine);
+            allMatched &= matched;
+            System.out.println(path + ": " + (matched ? "matched" : "DIVERGED")
+                    + " after " + player.getTick() + " ticks (" + log.length + " bytes)"
+                    + ", score " + engine.getScore() + "/" + player.getExpectedScore()
+                    + ", missed " + engine.getMissedDots() + "/" + player.getExpectedMissedDots()
+                    + ", played in " + elapsed / 1000000.0 + " ms");
+        }
+
+        if(!allMatched) {
+            System.exit(1);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) in.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+}